@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.dataset.DatasetGenerator;
+import ru.yandex.practicum.filmorate.dataset.DatasetGeneratorRunner;
+import ru.yandex.practicum.filmorate.dataset.DatasetSpec;
+
+/**
+ * Контекст приложения для бенчмарков: встроенная H2 в памяти и выбранное хранилище ("db" или "inmemory"),
+ * заполненные {@link DatasetGenerator} набором данных заданного размера. Размер - количество пользователей,
+ * фильмов в 10 раз меньше, лайков и заявок в друзья - в среднем {@link #LIKES_PER_USER}
+ * и {@link #FRIENDS_PER_USER} на пользователя.
+ */
+final class BenchmarkDataset {
+
+    static final String DB = "db";
+    static final String IN_MEMORY = "inmemory";
+
+    static final int LIKES_PER_USER = 5;
+    static final int FRIENDS_PER_USER = 5;
+
+    private BenchmarkDataset() {
+    }
+
+    static int filmsCount(int usersCount) {
+        return Math.max(usersCount / 10, 10);
+    }
+
+    static ConfigurableApplicationContext start(String storage) {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.ru.yandex.practicum.filmorate=WARN");
+        if (IN_MEMORY.equals(storage)) {
+            builder.profiles(IN_MEMORY);
+        }
+        // Аргументы командной строки важнее application*.properties, поэтому файловая база и снимок хранилищ
+        // приложения не используются: иначе данные прошлых запусков конфликтовали бы со сгенерированными
+        return builder.run("--spring.datasource.url=jdbc:h2:mem:benchmark;mode=MySQL;DB_CLOSE_DELAY=-1",
+                "--filmorate.snapshot.enabled=false");
+    }
+
+    static void load(ConfigurableApplicationContext context, int usersCount) {
+        DatasetSpec spec = DatasetSpec.builder()
+                .users(usersCount)
+                .films(filmsCount(usersCount))
+                .likes((long) usersCount * LIKES_PER_USER)
+                .friendships((long) usersCount * FRIENDS_PER_USER)
+                .build();
+        DatasetGenerator.generate(spec, DatasetGeneratorRunner.createWriter(context, context.getEnvironment()));
+    }
+}
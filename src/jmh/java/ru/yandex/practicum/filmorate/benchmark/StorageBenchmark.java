@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.model.Fields;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути хранилищ и сервисов на наборах данных разного размера для обоих хранилищ.
+ * <p>
+ * Запуск: mvn -P jmh -DskipTests verify, отдельные параметры - через -Djmh.params="-p size=1000 -p storage=db".
+ * Результаты пишутся в target/jmh-result.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class StorageBenchmark {
+
+    @Param({BenchmarkDataset.DB, BenchmarkDataset.IN_MEMORY})
+    private String storage;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private FilmStorage filmStorage;
+    private UserStorage userStorage;
+    private LikeStorage likeStorage;
+    private FilmService filmService;
+    private UserService userService;
+
+    private int filmsCount;
+    private Long benchmarkUserId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDataset.start(storage);
+        try {
+            BenchmarkDataset.load(context, size);
+        } catch (RuntimeException e) {
+            context.close();
+            throw e;
+        }
+
+        filmStorage = context.getBean(FilmStorage.class);
+        userStorage = context.getBean(UserStorage.class);
+        likeStorage = context.getBean(LikeStorage.class);
+        filmService = context.getBean(FilmService.class);
+        userService = context.getBean(UserService.class);
+        filmsCount = BenchmarkDataset.filmsCount(size);
+
+        // Отдельный пользователь без лайков: addLike/deleteLike не меняют основной набор данных
+        benchmarkUserId = userStorage.createUser(User.builder()
+                .login("benchmark")
+                .email("benchmark@mail.com")
+                .birthday(LocalDate.of(1970, 1, 1))
+                .build()).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Film> getFilmsList() {
+        return filmStorage.getFilmsList();
+    }
+
+    @Benchmark
+    public Film getFilm() {
+        return filmStorage.getFilm(randomFilmId());
+    }
+
+    @Benchmark
+    public List<Film> popularFilms() {
+        return filmService.likedFilmsList(10L, Film.SUMMARY_FIELDS);
+    }
+
+    @Benchmark
+    public void addAndDeleteLike() {
+        Long filmId = randomFilmId();
+        likeStorage.addLike(filmId, benchmarkUserId);
+        likeStorage.deleteLike(filmId, benchmarkUserId);
+    }
+
+    @Benchmark
+    public List<User> getCommonFriendsList() {
+        return userStorage.getCommonFriendsList(randomUserId(), randomUserId());
+    }
+
+    @Benchmark
+    public List<User> commonFriends() {
+        return userService.getCommonFriendsList(randomUserId(), randomUserId(), User.SUMMARY_FIELDS);
+    }
+
+    @Benchmark
+    public List<User> friendSuggestions() {
+        return userService.getFriendSuggestions(randomUserId(), 10, Fields.of("login"));
+    }
+
+    private Long randomFilmId() {
+        return 1 + ThreadLocalRandom.current().nextLong(filmsCount);
+    }
+
+    private Long randomUserId() {
+        return 1 + ThreadLocalRandom.current().nextLong(size);
+    }
+}
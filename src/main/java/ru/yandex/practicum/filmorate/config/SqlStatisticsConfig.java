@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.monitoring.SqlStatisticsDataSource;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class SqlStatisticsConfig {
+
+    /**
+     * Оборачивает источник данных в {@link SqlStatisticsDataSource}. JdbcTemplate и транзакции
+     * получают уже обернутый источник.
+     */
+    @Bean
+    public static BeanPostProcessor sqlStatisticsDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ((bean instanceof DataSource) && !(bean instanceof SqlStatisticsDataSource)) {
+                    return new SqlStatisticsDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+}
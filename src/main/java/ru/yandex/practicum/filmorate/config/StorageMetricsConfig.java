@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ClassUtils;
+import ru.yandex.practicum.filmorate.monitoring.StorageMetricsInterceptor;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.friends.FriendsStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+@Configuration
+public class StorageMetricsConfig {
+
+    private static final List<Class<?>> STORAGE_INTERFACES = List.of(FilmStorage.class, UserStorage.class,
+            LikeStorage.class, FriendsStorage.class, GenreStorage.class, MpaStorage.class);
+
+    private static final StaticMethodMatcherPointcut STORAGE_METHODS = new StaticMethodMatcherPointcut() {
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return STORAGE_INTERFACES.stream()
+                    .filter(type -> type.isAssignableFrom(targetClass))
+                    .anyMatch(type -> ClassUtils.hasMethod(type, method.getName(), method.getParameterTypes()));
+        }
+    };
+
+    /**
+     * Оборачивает каждую реализацию интерфейсов хранилищ в {@link StorageMetricsInterceptor}.
+     * Метрики помечаются именем бина, поэтому, например, genreDbStorage и genreCachedStorage различаются.
+     * Перехватываются только методы интерфейсов. Уже проксированные бины (с @Transactional)
+     * получают перехватчик первым, и в таймер попадает время транзакции целиком.
+     */
+    @Bean
+    public static BeanPostProcessor storageMetricsPostProcessor(ObjectProvider<MeterRegistry> registryProvider) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                Class<?> targetClass = AopUtils.getTargetClass(bean);
+                if (STORAGE_INTERFACES.stream().noneMatch(type -> type.isAssignableFrom(targetClass))) {
+                    return bean;
+                }
+
+                Advisor advisor = new DefaultPointcutAdvisor(STORAGE_METHODS,
+                        new StorageMetricsInterceptor(beanName, registryProvider));
+                if ((bean instanceof Advised) && !((Advised) bean).isFrozen()) {
+                    ((Advised) bean).addAdvisor(0, advisor);
+                    return bean;
+                }
+
+                ProxyFactory proxyFactory = new ProxyFactory(bean);
+                proxyFactory.setProxyTargetClass(true);
+                proxyFactory.addAdvisor(advisor);
+                return proxyFactory.getProxy(targetClass.getClassLoader());
+            }
+        };
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.model.like.LikesCountReconciliation;
+import ru.yandex.practicum.filmorate.storage.like.LikesCountReconciler;
+
+/**
+ *   POST /admin/likes-count/reconcile   — запускает фоновую сверку счетчиков лайков с таблицей FilmLikes.
+ *                                         202 с ходом сверки, 409 - если сверка уже идет.
+ *   GET /admin/likes-count/reconcile    — ход текущей или результат последней сверки.
+ *
+ *   Только для хранилища в БД: в профиле inmemory счетчик лайков - размер множества лайков и расходиться не может.
+ */
+
+@RestController
+@RequestMapping("/admin")
+@Profile("!inmemory & !eventlog")
+@Slf4j
+public class AdminController {
+
+    private final LikesCountReconciler likesCountReconciler;
+
+    @Autowired
+    public AdminController(LikesCountReconciler likesCountReconciler) {
+        this.likesCountReconciler = likesCountReconciler;
+    }
+
+    @PostMapping("/likes-count/reconcile")
+    public ResponseEntity<LikesCountReconciliation> startLikesCountReconciliation() {
+        log.info("Запрос на запуск сверки счетчиков лайков");
+        HttpStatus status = likesCountReconciler.start() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT;
+        return ResponseEntity.status(status).body(likesCountReconciler.getStatus());
+    }
+
+    @GetMapping("/likes-count/reconcile")
+    public LikesCountReconciliation getLikesCountReconciliation() {
+        return likesCountReconciler.getStatus();
+    }
+}
@@ -1,46 +1,122 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingPathVariableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateBadRequestException;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateSqlException;
+import ru.yandex.practicum.filmorate.model.Fields;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.like.Like;
+import ru.yandex.practicum.filmorate.model.like.LikeResult;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import static ru.yandex.practicum.filmorate.controller.Responses.project;
+import static ru.yandex.practicum.filmorate.controller.Responses.writeNdjsonLine;
+
 /**
+ *   GET /films?genre=&mpa=&yearFrom=&yearTo=&sort=id|popular&after=&afterLikes=&limit=
+ *                                       — каталог с фильмами жанра, рейтинга и годов выпуска. Страницы по ключу сортировки:
+ *                                         after - ID последнего фильма страницы, afterLikes - его likesCount для sort=popular.
  *   GET /films/{id}                     — добавьте возможность получать каждый фильм и данные о пользователях по их уникальному идентификатору.
  *   PUT /films/{id}/like/{userId}       — пользователь ставит лайк фильму. +
  *   DELETE /films/{id}/like/{userId}    — пользователь удаляет лайк. +
  *   GET /films/popular?count={count}    — возвращает список из первых count фильмов по количеству лайков. Если значение параметра count не задано, верните первые 10.
+ *   GET /films/trending?window=1h|24h|7d&count= — первые count фильмов по количеству лайков за последний час, сутки или неделю (по умолчанию 24h, 10 фильмов).
+ *   GET /films/search?q=&limit=         — поиск по названию и описанию (префиксы слов), сначала релевантные и популярные. По умолчанию 10 фильмов.
+ *   GET /films/{id}/likes?after=&limit= — страница пользователей, лайкнувших фильм (keyset по ID пользователя).
+ *   POST /films/likes                   — пакетная загрузка лайков: JSON-массив или NDJSON-поток пар (filmId, userId).
+ *   POST /films/batch                   — пакетное создание фильмов, возвращает созданные фильмы с присвоенными ID.
+ *
+ *   Запросы на чтение принимают параметр fields=name,genres,... со списком полей ответа.
+ *   Списки по умолчанию возвращаются без likesList, отдельный фильм - целиком.
  */
 
 @RestController
+@Validated
 @RequestMapping("/films")
 @Slf4j
 public class FilmController {
 
+    private static final int LIKES_CHUNK_SIZE = 10_000;
+
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public List<Film> getFilmsList() {
-        log.info("Запрос на получение списка фильмов");
-        return filmService.getFilmsList();
+    public MappingJacksonValue getFilmsList(@RequestParam(required = false) Long after,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String fields,
+                                            @RequestParam(required = false) Integer genre,
+                                            @RequestParam(required = false) Integer mpa,
+                                            @RequestParam(required = false) Integer yearFrom,
+                                            @RequestParam(required = false) Integer yearTo,
+                                            @RequestParam(required = false) String sort,
+                                            @RequestParam(required = false) Integer afterLikes) {
+        Fields filmFields = Fields.parse(fields, Film.FIELDS, Film.SUMMARY_FIELDS);
+
+        if ((genre != null) || (mpa != null) || (yearFrom != null) || (yearTo != null) || (sort != null)) {
+            log.info("Запрос на получение каталога фильмов: genre={}, mpa={}, yearFrom={}, yearTo={}, sort={}, after={}, limit={}",
+                    genre, mpa, yearFrom, yearTo, sort, after, limit);
+
+            FilmFilter filter = FilmFilter.builder()
+                    .genreId(genre)
+                    .mpaId(mpa)
+                    .yearFrom(yearFrom)
+                    .yearTo(yearTo)
+                    .sort(parseSort(sort))
+                    .afterId(after)
+                    .afterLikesCount(afterLikes)
+                    .build();
+            return project(filmService.getFilmsCatalog(filter, limit, filmFields), filmFields);
+        }
+
+        if ((after == null) && (limit == null)) {
+            log.info("Запрос на получение списка фильмов");
+            return project(filmService.getFilmsList(filmFields), filmFields);
+        }
+
+        log.info("Запрос на получение страницы списка фильмов: after={}, limit={}", after, limit);
+        return project(filmService.getFilmsPage(after, limit, filmFields), filmFields);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamFilmsList(@RequestParam(required = false) String fields) {
+        log.info("Запрос на потоковую выгрузку списка фильмов");
+
+        Fields filmFields = Fields.parse(fields, Film.FIELDS, Film.SUMMARY_FIELDS);
+        ObjectWriter writer = objectMapper.writer(filmFields.toFilterProvider());
+        return outputStream -> filmService.forEachFilm(filmFields, film -> writeNdjsonLine(outputStream, writer, film));
     }
 
     @PostMapping
@@ -49,10 +125,19 @@ public class FilmController {
         return filmService.createFilm(film);
     }
 
+    @PostMapping("/batch")
+    public List<Film> createFilms(@RequestBody List<@Valid Film> films) {
+        log.info("Запрос на пакетное создание записей: {}", films.size());
+        return filmService.createFilms(films);
+    }
+
+    /**
+     * Список лайков при обновлении не меняется и хранилищем не перечитывается, поэтому в ответ не включается.
+     */
     @PutMapping
-    public Film updateFilm(@Valid @RequestBody Film film) {
+    public MappingJacksonValue updateFilm(@Valid @RequestBody Film film) {
         log.info("Запрос на обновление текущей записи");
-        return filmService.updateFilm(film);
+        return project(filmService.updateFilm(film), Film.SUMMARY_FIELDS);
     }
 
     @PutMapping(value = {"/{id}/like/{userId}", "/{id}/like/", "/like/{userId}"})
@@ -67,16 +152,91 @@ public class FilmController {
         filmService.deleteLike(filmId, userId);
     }
 
+    @PostMapping(value = "/likes", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<LikeResult> addLikes(@RequestBody List<Like> likes) {
+        log.info("Запрос на пакетное добавление лайков: {}", likes.size());
+        return filmService.addLikes(likes);
+    }
+
+    @PostMapping(value = "/likes", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public List<LikeResult> addLikesStream(InputStream inputStream) throws IOException {
+        log.info("Запрос на потоковое добавление лайков");
+
+        List<LikeResult> results = new ArrayList<>();
+        List<Like> chunk = new ArrayList<>(LIKES_CHUNK_SIZE);
+
+        try (MappingIterator<Like> likes = objectMapper.readerFor(Like.class).readValues(inputStream)) {
+            while (likes.hasNextValue()) {
+                chunk.add(likes.nextValue());
+                if (chunk.size() == LIKES_CHUNK_SIZE) {
+                    results.addAll(filmService.addLikes(chunk));
+                    chunk.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new FilmorateBadRequestException("Ошибка разбора строки NDJSON: " + e.getOriginalMessage());
+        }
+        results.addAll(filmService.addLikes(chunk));
+
+        return results;
+    }
+
     @GetMapping("/{id}")
-    public Film getFilm(@PathVariable("id") Long filmId) {
+    public MappingJacksonValue getFilm(@PathVariable("id") Long filmId, @RequestParam(required = false) String fields) {
         log.info("Запрос на получение данных фильма");
-        return filmService.getFilm(filmId);
+
+        Fields filmFields = Fields.parse(fields, Film.FIELDS, Fields.all());
+        return project(filmService.getFilm(filmId, filmFields), filmFields);
+    }
+
+    @GetMapping("/{id}/likes")
+    public MappingJacksonValue getFilmLikers(@PathVariable("id") Long filmId,
+                                             @RequestParam(required = false) Long after,
+                                             @RequestParam(required = false) Integer limit,
+                                             @RequestParam(required = false) String fields) {
+        log.info("Запрос на получение страницы лайков фильма: after={}, limit={}", after, limit);
+
+        Fields userFields = Fields.parse(fields, User.FIELDS, User.SUMMARY_FIELDS);
+        return project(filmService.getFilmLikers(filmId, after, limit, userFields), userFields);
     }
 
     @GetMapping("/popular")
-    public List<Film> likedFilmsList(@RequestParam(required = false) Long count) {
+    public MappingJacksonValue likedFilmsList(@RequestParam(required = false) Long count,
+                                              @RequestParam(required = false) String fields) {
         log.info("Запрос на получение списка популярных фильмов");
-        return filmService.likedFilmsList(count);
+
+        Fields filmFields = Fields.parse(fields, Film.FIELDS, Film.SUMMARY_FIELDS);
+        return project(filmService.likedFilmsList(count, filmFields), filmFields);
+    }
+
+    @GetMapping("/trending")
+    public MappingJacksonValue trendingFilmsList(@RequestParam(required = false) String window,
+                                                 @RequestParam(required = false) Long count,
+                                                 @RequestParam(required = false) String fields) {
+        log.info("Запрос на получение списка популярных за период фильмов: window={}", window);
+
+        Fields filmFields = Fields.parse(fields, Film.FIELDS, Film.SUMMARY_FIELDS);
+        return project(filmService.getTrendingFilms(window, count, filmFields), filmFields);
+    }
+
+    @GetMapping("/search")
+    public MappingJacksonValue searchFilms(@RequestParam(required = false) String q,
+                                           @RequestParam(required = false) Integer limit,
+                                           @RequestParam(required = false) String fields) {
+        log.info("Запрос на поиск фильмов: q={}, limit={}", q, limit);
+
+        Fields filmFields = Fields.parse(fields, Film.FIELDS, Film.SUMMARY_FIELDS);
+        return project(filmService.searchFilms(q, limit, filmFields), filmFields);
+    }
+
+    private FilmFilter.Sort parseSort(String sort) {
+        if ((sort == null) || sort.equalsIgnoreCase("id")) {
+            return FilmFilter.Sort.ID;
+        }
+        if (sort.equalsIgnoreCase("popular")) {
+            return FilmFilter.Sort.POPULAR;
+        }
+        throw new FilmorateBadRequestException("Параметр 'sort' должен быть 'id' или 'popular'");
     }
 
     @ExceptionHandler
@@ -91,6 +251,18 @@ public class FilmController {
         return errorMap;
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public List<String> handleConstraintViolationException(ConstraintViolationException e) {
+        ArrayList<String> errorMap = new ArrayList<>();
+
+        for (ConstraintViolation<?> violation : e.getConstraintViolations()) {
+            errorMap.add(violation.getMessage());
+        }
+
+        return errorMap;
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public String handleNotFoundException(FilmorateNotFoundException e) {
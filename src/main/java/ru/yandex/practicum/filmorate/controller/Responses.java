@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import ru.yandex.practicum.filmorate.model.Fields;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Оформление ответов, общее для контроллеров фильмов и пользователей.
+ */
+final class Responses {
+
+    private Responses() {
+    }
+
+    /**
+     * Оборачивает ответ фильтром полей: в JSON попадают только поля из набора.
+     */
+    static MappingJacksonValue project(Object value, Fields fields) {
+        MappingJacksonValue result = new MappingJacksonValue(value);
+        result.setFilters(fields.toFilterProvider());
+        return result;
+    }
+
+    static void writeNdjsonLine(OutputStream outputStream, ObjectWriter writer, Object value) {
+        try {
+            outputStream.write(writer.writeValueAsBytes(value));
+            outputStream.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,54 +1,102 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateBadRequestException;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateSqlException;
+import ru.yandex.practicum.filmorate.model.Fields;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
 import javax.validation.Valid;
 import java.util.*;
 
+import static ru.yandex.practicum.filmorate.controller.Responses.project;
+import static ru.yandex.practicum.filmorate.controller.Responses.writeNdjsonLine;
+
 /**
  * PUT /users/{id}/friends/{friendId} — добавление в друзья. +
  * DELETE /users/{id}/friends/{friendId} — удаление из друзей. +
  * GET /users/{id}/friends — возвращаем список пользователей, являющихся его друзьями. +
  * GET /users/{id}/friends/common/{otherId} — список друзей, общих с другим пользователем. +
+ * GET /users/{id}/friends/suggestions?limit={limit} — пользователи, не являющиеся друзьями, по убыванию количества общих друзей.
+ * GET /users/{id}/likes?after=&limit= — страница фильмов, лайкнутых пользователем (keyset по ID фильма).
+ * GET /users/{id}/recommendations?count={count} — фильмы, похожие на понравившиеся пользователю (item-item). Если count не задан, возвращаются первые 10.
+ * POST /users/batch — пакетное создание пользователей, возвращает созданных пользователей с присвоенными ID.
+ *
+ * Запросы на чтение принимают параметр fields=login,name,... со списком полей ответа.
+ * Списки по умолчанию возвращаются без friends, отдельный пользователь - целиком.
  */
 @RestController
+@Validated
 @RequestMapping("/users")
 @Slf4j
 public class UserController {
 
     private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, RecommendationService recommendationService, ObjectMapper objectMapper) {
         this.userService = userService;
+        this.recommendationService = recommendationService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public List<User> getUsersList() {
-        log.info("Запрос на получение списка пользователей");
-        return userService.getUsersList();
+    public MappingJacksonValue getUsersList(@RequestParam(required = false) Long after,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String fields) {
+        Fields userFields = Fields.parse(fields, User.FIELDS, User.SUMMARY_FIELDS);
+
+        if ((after == null) && (limit == null)) {
+            log.info("Запрос на получение списка пользователей");
+            return project(userService.getUsersList(userFields), userFields);
+        }
+
+        log.info("Запрос на получение страницы списка пользователей: after={}, limit={}", after, limit);
+        return project(userService.getUsersPage(after, limit, userFields), userFields);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamUsersList(@RequestParam(required = false) String fields) {
+        log.info("Запрос на потоковую выгрузку списка пользователей");
+
+        Fields userFields = Fields.parse(fields, User.FIELDS, User.SUMMARY_FIELDS);
+        ObjectWriter writer = objectMapper.writer(userFields.toFilterProvider());
+        return outputStream -> userService.forEachUser(userFields, user -> writeNdjsonLine(outputStream, writer, user));
     }
 
     @GetMapping("/{id}")
-    public User getUser(@PathVariable("id") Long userId) {
+    public MappingJacksonValue getUser(@PathVariable("id") Long userId, @RequestParam(required = false) String fields) {
         log.info("Запрос на получение данных пользователя с ID={}", userId);
-        return userService.getUser(userId);
+
+        Fields userFields = Fields.parse(fields, User.FIELDS, Fields.all());
+        return project(userService.getUser(userId, userFields), userFields);
     }
 
     @GetMapping("/{id}/friends")
-    public List<User> getFriendsList(@PathVariable("id") Long userId) {
+    public MappingJacksonValue getFriendsList(@PathVariable("id") Long userId, @RequestParam(required = false) String fields) {
         log.info("Запрос на получение списка друзей пользователя с ID={}", userId);
-        return userService.getFriendsList(userId);
+
+        Fields userFields = Fields.parse(fields, User.FIELDS, User.SUMMARY_FIELDS);
+        return project(userService.getFriendsList(userId, userFields), userFields);
     }
 
     @PostMapping
@@ -57,6 +105,12 @@ public class UserController {
         return userService.createUser(user);
     }
 
+    @PostMapping("/batch")
+    public List<User> createUsers(@RequestBody List<@Valid User> users) {
+        log.info("Запрос на пакетное создание записей: {}", users.size());
+        return userService.createUsers(users);
+    }
+
     @PutMapping
     public User updateUser(@Valid @RequestBody User user) {
         log.info("Запрос на обновление текущей записи");
@@ -76,9 +130,43 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
-    public List<User> getCommonFriendsList(@PathVariable("id") Long userId, @PathVariable("otherId") Long otherId) {
+    public MappingJacksonValue getCommonFriendsList(@PathVariable("id") Long userId, @PathVariable("otherId") Long otherId,
+                                                    @RequestParam(required = false) String fields) {
         log.info("Запрос на получение списка общих друзей");
-        return userService.getCommonFriendsList(userId, otherId);
+
+        Fields userFields = Fields.parse(fields, User.FIELDS, User.SUMMARY_FIELDS);
+        return project(userService.getCommonFriendsList(userId, otherId, userFields), userFields);
+    }
+
+    @GetMapping("/{id}/friends/suggestions")
+    public MappingJacksonValue getFriendSuggestions(@PathVariable("id") Long userId,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    @RequestParam(required = false) String fields) {
+        log.info("Запрос на получение списка рекомендованных друзей");
+
+        Fields userFields = Fields.parse(fields, User.FIELDS, User.SUMMARY_FIELDS);
+        return project(userService.getFriendSuggestions(userId, limit, userFields), userFields);
+    }
+
+    @GetMapping("/{id}/likes")
+    public MappingJacksonValue getLikedFilms(@PathVariable("id") Long userId,
+                                             @RequestParam(required = false) Long after,
+                                             @RequestParam(required = false) Integer limit,
+                                             @RequestParam(required = false) String fields) {
+        log.info("Запрос на получение страницы лайков пользователя: after={}, limit={}", after, limit);
+
+        Fields filmFields = Fields.parse(fields, Film.FIELDS, Film.SUMMARY_FIELDS);
+        return project(userService.getLikedFilms(userId, after, limit, filmFields), filmFields);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public MappingJacksonValue getRecommendations(@PathVariable("id") Long userId,
+                                                  @RequestParam(required = false) Integer count,
+                                                  @RequestParam(required = false) String fields) {
+        log.info("Запрос на получение рекомендованных фильмов");
+
+        Fields filmFields = Fields.parse(fields, Film.FIELDS, Film.SUMMARY_FIELDS);
+        return project(recommendationService.getRecommendations(userId, count, filmFields), filmFields);
     }
 
     @ExceptionHandler
@@ -93,6 +181,18 @@ public class UserController {
         return errorMap;
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public List<String> handleConstraintViolationException(ConstraintViolationException e) {
+        ArrayList<String> errorMap = new ArrayList<>();
+
+        for (ConstraintViolation<?> violation : e.getConstraintViolations()) {
+            errorMap.add(violation.getMessage());
+        }
+
+        return errorMap;
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public String handleUpdateUserBadRequestException(FilmorateBadRequestException e) {
@@ -0,0 +1,234 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.genre.Genre;
+import ru.yandex.practicum.filmorate.model.like.Like;
+import ru.yandex.practicum.filmorate.model.mpa.MPA;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Детерминированный генератор синтетического набора данных: пользователи, фильмы, лайки и дружба.
+ * <p>
+ * Все значения выводятся из одного {@link SplittableRandom} с seed из {@link DatasetSpec}, пачки выдаются
+ * в {@link DatasetWriter} в фиксированном порядке. Время лайков тоже берется из него, равномерно за период из спецификации. Активность пользователей, популярность фильмов
+ * и количество друзей распределены по степенному закону: объекты случайно переставляются,
+ * и объект с рангом r получает вес 1 / r^exponent. Количество записей каждого пользователя задается
+ * заранее пропорционально его весу, а сами записи выбираются по весам без повторов, поэтому
+ * проверять уникальность по всему набору не нужно.
+ */
+@Slf4j
+public final class DatasetGenerator {
+
+    public static final int CHUNK_SIZE = 10_000;
+
+    private static final int GENRES_COUNT = 6;
+    private static final int MPA_COUNT = 5;
+
+    private DatasetGenerator() {
+    }
+
+    public static void generate(DatasetSpec spec, DatasetWriter writer) {
+        SplittableRandom random = new SplittableRandom(spec.getSeed());
+
+        long[] userIds = writeUsers(spec, writer);
+        long[] filmIds = writeFilms(spec, writer, random);
+        log.info("Сгенерировано пользователей: {}, фильмов: {}", userIds.length, filmIds.length);
+
+        int[] userByRank = shuffledIndexes(userIds.length, random);
+        int[] filmByRank = shuffledIndexes(filmIds.length, random);
+        Sampler filmSampler = new Sampler(filmIds.length, spec.getExponent());
+        Sampler userSampler = new Sampler(userIds.length, spec.getExponent());
+
+        List<Like> likes = new ArrayList<>(CHUNK_SIZE);
+        long[] likedAtMillis = new long[CHUNK_SIZE];
+        long likedUntilMillis = spec.getLikedUntil().toEpochMilli();
+        long likesPeriodMillis = Math.max(TimeUnit.DAYS.toMillis(spec.getLikesPeriodDays()), 1);
+        generateLinks(userIds, userByRank, filmIds, filmByRank, filmSampler, spec.getLikes(), spec,
+                random, (userId, filmId) -> {
+                    likedAtMillis[likes.size()] = likedUntilMillis - 1 - random.nextLong(likesPeriodMillis);
+                    likes.add(new Like(filmId, userId));
+                    if (likes.size() >= CHUNK_SIZE) {
+                        writer.writeLikes(likes, likedAtMillis);
+                        likes.clear();
+                    }
+                });
+        if (!likes.isEmpty()) {
+            writer.writeLikes(likes, likedAtMillis);
+        }
+
+        List<long[]> friendships = new ArrayList<>(CHUNK_SIZE);
+        generateLinks(userIds, userByRank, userIds, userByRank, userSampler, spec.getFriendships(), spec,
+                random, (userId, friendId) -> {
+                    friendships.add(new long[] {userId, friendId});
+                    if (friendships.size() >= CHUNK_SIZE) {
+                        writer.writeFriendships(friendships);
+                        friendships.clear();
+                    }
+                });
+        if (!friendships.isEmpty()) {
+            writer.writeFriendships(friendships);
+        }
+
+        writer.finish();
+    }
+
+    private static long[] writeUsers(DatasetSpec spec, DatasetWriter writer) {
+        long[] userIds = new long[spec.getUsers()];
+        for (int from = 0; from < userIds.length; from += CHUNK_SIZE) {
+            List<User> users = new ArrayList<>(CHUNK_SIZE);
+            for (int i = from; i < Math.min(from + CHUNK_SIZE, userIds.length); i++) {
+                String login = "user_" + spec.getSeed() + "_" + i;
+                users.add(User.builder()
+                        .login(login)
+                        .name("User " + i)
+                        .email(login + "@example.com")
+                        .birthday(LocalDate.of(1950, 1, 1).plusDays(i % 20_000))
+                        .build());
+            }
+            copyIds(writer.writeUsers(users), userIds, from);
+        }
+        return userIds;
+    }
+
+    private static long[] writeFilms(DatasetSpec spec, DatasetWriter writer, SplittableRandom random) {
+        long[] filmIds = new long[spec.getFilms()];
+        for (int from = 0; from < filmIds.length; from += CHUNK_SIZE) {
+            List<Film> films = new ArrayList<>(CHUNK_SIZE);
+            for (int i = from; i < Math.min(from + CHUNK_SIZE, filmIds.length); i++) {
+                List<Genre> genres = new ArrayList<>();
+                int firstGenre = 1 + random.nextInt(GENRES_COUNT);
+                genres.add(Genre.builder().id(firstGenre).build());
+                if (random.nextBoolean()) {
+                    genres.add(Genre.builder().id(1 + firstGenre % GENRES_COUNT).build());
+                }
+
+                films.add(Film.builder()
+                        .name("Film " + spec.getSeed() + "-" + i)
+                        .description("Synthetic film " + i)
+                        .genres(genres)
+                        .mpa(MPA.builder().id(1 + random.nextInt(MPA_COUNT)).build())
+                        .releaseDate(LocalDate.of(1930, 1, 1).plusDays(random.nextInt(33_000)))
+                        .duration(60 + random.nextInt(120))
+                        .build());
+            }
+            copyIds(writer.writeFilms(films), filmIds, from);
+        }
+        return filmIds;
+    }
+
+    /**
+     * Связи пользователей с объектами (фильмами или другими пользователями). Пользователь с рангом r
+     * получает долю total, пропорциональную его весу, но не больше maxPerUser и половины объектов. Объекты выбираются
+     * по степенному закону; при повторе берется равномерно случайный объект, чтобы тяжелый пользователь
+     * не застревал на редких объектах хвоста.
+     */
+    private static void generateLinks(long[] userIds, int[] userByRank, long[] targetIds, int[] targetByRank,
+                                      Sampler targetSampler, long total, DatasetSpec spec, SplittableRandom random,
+                                      LinkSink sink) {
+        boolean selfLinks = (userIds == targetIds);
+        int cap = Math.min(spec.getMaxPerUser(), (targetIds.length - (selfLinks ? 1 : 0)) / 2);
+        if ((userIds.length == 0) || (cap == 0)) {
+            return;
+        }
+
+        int[] degrees = degrees(total, userIds.length, cap, spec.getExponent());
+        Set<Integer> chosen = new HashSet<>();
+        for (int rank = 0; rank < userIds.length; rank++) {
+            int user = userByRank[rank];
+            chosen.clear();
+            while (chosen.size() < degrees[rank]) {
+                int target = targetByRank[targetSampler.sample(random)];
+                if ((selfLinks && (target == user)) || chosen.contains(target)) {
+                    target = random.nextInt(targetIds.length);
+                }
+                if ((selfLinks && (target == user)) || !chosen.add(target)) {
+                    continue;
+                }
+                sink.accept(userIds[user], targetIds[target]);
+            }
+        }
+    }
+
+    /**
+     * Количество связей по рангам: total делится пропорционально весам 1 / (r + 1)^exponent с ограничением cap,
+     * остаток распределяется по одной связи, начиная с первого ранга.
+     */
+    private static int[] degrees(long total, int count, int cap, double exponent) {
+        double weightsSum = 0;
+        for (int rank = 0; rank < count; rank++) {
+            weightsSum += weight(rank, exponent);
+        }
+
+        int[] degrees = new int[count];
+        long assigned = 0;
+        for (int rank = 0; rank < count; rank++) {
+            degrees[rank] = (int) Math.min(cap, (long) (total * weight(rank, exponent) / weightsSum));
+            assigned += degrees[rank];
+        }
+
+        long rest = Math.min(total, (long) count * cap) - assigned;
+        for (int rank = 0; rest > 0; rank = (rank + 1) % count) {
+            if (degrees[rank] < cap) {
+                degrees[rank]++;
+                rest--;
+            }
+        }
+        return degrees;
+    }
+
+    private static double weight(int rank, double exponent) {
+        return 1.0 / Math.pow(rank + 1, exponent);
+    }
+
+    private static int[] shuffledIndexes(int count, SplittableRandom random) {
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = i;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = indexes[i];
+            indexes[i] = indexes[j];
+            indexes[j] = swap;
+        }
+        return indexes;
+    }
+
+    private static void copyIds(List<Long> ids, long[] target, int from) {
+        for (int i = 0; i < ids.size(); i++) {
+            target[from + i] = ids.get(i);
+        }
+    }
+
+    /**
+     * Выбор ранга по степенному закону: бинарный поиск по накопленным весам.
+     */
+    private static final class Sampler {
+        private final double[] cumulativeWeights;
+
+        Sampler(int count, double exponent) {
+            cumulativeWeights = new double[count];
+            double sum = 0;
+            for (int rank = 0; rank < count; rank++) {
+                sum += weight(rank, exponent);
+                cumulativeWeights[rank] = sum;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            double point = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+            int index = Arrays.binarySearch(cumulativeWeights, point);
+            return Math.min((index >= 0) ? index : -index - 1, cumulativeWeights.length - 1);
+        }
+    }
+
+    @FunctionalInterface
+    private interface LinkSink {
+        void accept(long userId, long targetId);
+    }
+}
@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.friends.FriendsStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Режим генерации данных из командной строки:
+ * <pre>
+ * java -jar filmorate.jar --filmorate.dataset.generate=true --filmorate.dataset.users=1000000 \
+ *     --filmorate.dataset.films=100000 --filmorate.dataset.likes=10000000 --filmorate.dataset.friendships=5000000
+ * </pre>
+ * Время лайков распределяется по filmorate.dataset.likes-period-days дням до момента запуска.
+ * После генерации приложение завершается, если не задано filmorate.dataset.exit=false.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.dataset.generate", havingValue = "true")
+public class DatasetGeneratorRunner implements ApplicationRunner {
+
+    private final ApplicationContext context;
+    private final Environment environment;
+
+    @Value("${filmorate.dataset.users:10000}")
+    private int users;
+
+    @Value("${filmorate.dataset.films:1000}")
+    private int films;
+
+    @Value("${filmorate.dataset.likes:100000}")
+    private long likes;
+
+    @Value("${filmorate.dataset.friendships:50000}")
+    private long friendships;
+
+    @Value("${filmorate.dataset.seed:42}")
+    private long seed;
+
+    @Value("${filmorate.dataset.exponent:1.0}")
+    private double exponent;
+
+    @Value("${filmorate.dataset.max-per-user:200}")
+    private int maxPerUser;
+
+    @Value("${filmorate.dataset.likes-period-days:365}")
+    private int likesPeriodDays;
+
+    @Value("${filmorate.dataset.exit:true}")
+    private boolean exit;
+
+    public DatasetGeneratorRunner(ApplicationContext context, Environment environment) {
+        this.context = context;
+        this.environment = environment;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        DatasetSpec spec = DatasetSpec.builder()
+                .users(users)
+                .films(films)
+                .likes(likes)
+                .friendships(friendships)
+                .seed(seed)
+                .exponent(exponent)
+                .maxPerUser(maxPerUser)
+                .likedUntil(Instant.now().truncatedTo(ChronoUnit.SECONDS))
+                .likesPeriodDays(likesPeriodDays)
+                .build();
+
+        log.info("Генерация набора данных: {}", spec);
+        long startedAt = System.currentTimeMillis();
+        ApplicationEventPublisher eventPublisher = exit ? event -> { } : context;
+        DatasetGenerator.generate(spec, createWriter(context, environment, eventPublisher));
+        log.info("Набор данных сгенерирован за {} мс", System.currentTimeMillis() - startedAt);
+
+        if (exit) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    /**
+     * Приемник для активного хранилища: для базы - пакетная запись через JDBC, для хранилища в памяти - через хранилища.
+     */
+    public static DatasetWriter createWriter(ApplicationContext context, Environment environment) {
+        return createWriter(context, environment, context);
+    }
+
+    /**
+     * То же с явным получателем {@link ru.yandex.practicum.filmorate.event.DatasetLoadedEvent}: при завершении
+     * сразу после генерации индексы в памяти перестраивать незачем.
+     */
+    private static DatasetWriter createWriter(ApplicationContext context, Environment environment,
+                                              ApplicationEventPublisher eventPublisher) {
+        if (environment.acceptsProfiles(Profiles.of("inmemory"))) {
+            return new StorageDatasetWriter(context.getBean(UserStorage.class), context.getBean(FilmStorage.class),
+                    context.getBean(LikeStorage.class), context.getBean(FriendsStorage.class));
+        }
+        return new JdbcDatasetWriter(context.getBean(JdbcTemplate.class), context.getBean(UserStorage.class),
+                context.getBean(FilmStorage.class), eventPublisher);
+    }
+}
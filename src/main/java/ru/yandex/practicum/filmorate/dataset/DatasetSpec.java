@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Параметры синтетического набора данных. Одинаковые параметры (включая seed) дают одинаковый набор.
+ * <p>
+ * likes и friendships - желаемое количество записей; у одного пользователя не больше maxPerUser записей
+ * и не больше половины всех фильмов (пользователей), поэтому записей может получиться меньше.
+ * exponent - показатель степенного закона: вес объекта с рангом r пропорционален 1 / r^exponent.
+ * Время лайков равномерно распределено по likesPeriodDays дням, предшествующим likedUntil.
+ */
+@Value
+@Builder(toBuilder = true)
+public class DatasetSpec {
+    int users;
+    int films;
+    long likes;
+    long friendships;
+    @Builder.Default
+    long seed = 42L;
+    @Builder.Default
+    double exponent = 1.0;
+    @Builder.Default
+    int maxPerUser = 200;
+    @Builder.Default
+    Instant likedUntil = Instant.parse("2022-01-01T00:00:00Z");
+    @Builder.Default
+    int likesPeriodDays = 365;
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.like.Like;
+
+import java.util.List;
+
+/**
+ * Приемник пачек, которые выдает {@link DatasetGenerator}.
+ */
+public interface DatasetWriter {
+
+    /**
+     * Сохраняет пользователей и возвращает их ID в порядке списка.
+     */
+    List<Long> writeUsers(List<User> users);
+
+    /**
+     * Сохраняет фильмы и возвращает их ID в порядке списка.
+     */
+    List<Long> writeFilms(List<Film> films);
+
+    /**
+     * Сохраняет лайки. Пары (фильм, пользователь) в наборе не повторяются.
+     * likedAtMillis[i] - время лайка likes.get(i) в миллисекундах, массив может быть длиннее списка.
+     */
+    void writeLikes(List<Like> likes, long[] likedAtMillis);
+
+    /**
+     * Сохраняет заявки в друзья: friendships[i][0] добавляет в друзья friendships[i][1].
+     */
+    void writeFriendships(List<long[]> friendships);
+
+    /**
+     * Вызывается после записи всего набора.
+     */
+    void finish();
+}
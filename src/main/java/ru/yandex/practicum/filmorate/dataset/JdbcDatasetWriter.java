@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.event.DatasetLoadedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.like.Like;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Запись набора данных в базу. Пользователи и фильмы создаются пакетно через хранилища,
+ * а лайки (вместе со сгенерированным временем) и дружба вставляются batch-запросами напрямую,
+ * без проверок существования и без событий: генератор гарантирует корректность ссылок и отсутствие повторов. Счетчики LikesCount накапливаются
+ * в памяти и записываются в конце, после чего публикуется {@link DatasetLoadedEvent}.
+ */
+@Slf4j
+public class JdbcDatasetWriter implements DatasetWriter {
+
+    private static final String INSERT_LIKE_QUERY = "INSERT INTO FilmLikes (User_ID, Film_ID, Created_At) VALUES (?, ?, ?);";
+    private static final String INSERT_FRIENDSHIP_QUERY = "INSERT INTO Friends (User_From, User_To, Status) VALUES (?, ?, 0);";
+    private static final String ADD_LIKES_COUNT_QUERY = "UPDATE FILM SET LikesCount = LikesCount + ? WHERE Film_ID = ?;";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<Long, Integer> likesCountByFilmId = new HashMap<>();
+    private long likesCount;
+    private long friendshipsCount;
+
+    public JdbcDatasetWriter(JdbcTemplate jdbcTemplate, UserStorage userStorage, FilmStorage filmStorage,
+                             ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userStorage = userStorage;
+        this.filmStorage = filmStorage;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public List<Long> writeUsers(List<User> users) {
+        return userStorage.createUsers(users).stream().map(User::getId).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> writeFilms(List<Film> films) {
+        return filmStorage.createFilms(films).stream().map(Film::getId).collect(Collectors.toList());
+    }
+
+    @Override
+    public void writeLikes(List<Like> likes, long[] likedAtMillis) {
+        List<Object[]> rows = new ArrayList<>(likes.size());
+        for (int i = 0; i < likes.size(); i++) {
+            Like like = likes.get(i);
+            rows.add(new Object[] {like.getUserId(), like.getFilmId(), new Timestamp(likedAtMillis[i])});
+            likesCountByFilmId.merge(like.getFilmId(), 1, Integer::sum);
+        }
+        batchInsert(INSERT_LIKE_QUERY, rows);
+        likesCount += likes.size();
+    }
+
+    @Override
+    public void writeFriendships(List<long[]> friendships) {
+        List<Object[]> rows = new ArrayList<>(friendships.size());
+        for (long[] friendship : friendships) {
+            rows.add(new Object[] {friendship[0], friendship[1]});
+        }
+        batchInsert(INSERT_FRIENDSHIP_QUERY, rows);
+        friendshipsCount += friendships.size();
+    }
+
+    @Override
+    public void finish() {
+        List<Object[]> rows = new ArrayList<>(likesCountByFilmId.size());
+        likesCountByFilmId.forEach((filmId, count) -> rows.add(new Object[] {count, filmId}));
+        batchInsert(ADD_LIKES_COUNT_QUERY, rows);
+        likesCountByFilmId.clear();
+
+        log.info("Набор данных записан. Лайков: {}, заявок в друзья: {}", likesCount, friendshipsCount);
+        eventPublisher.publishEvent(new DatasetLoadedEvent(likesCount, friendshipsCount));
+    }
+
+    /**
+     * Пачка строк одним batch-запросом в одной транзакции: без автокоммита на каждую строку.
+     */
+    private void batchInsert(String query, List<Object[]> rows) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(query)) {
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        ps.setObject(i + 1, row[i]);
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+}
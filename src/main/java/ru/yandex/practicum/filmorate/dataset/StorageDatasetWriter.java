@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.like.Like;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.friends.FriendsStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Запись набора данных через интерфейсы хранилищ - для хранилища в памяти (профиль inmemory).
+ * Индексы обновляются обычными событиями хранилищ. Лайки получают время добавления: интерфейс хранилища
+ * лайков не принимает время, поэтому сгенерированное время здесь не используется.
+ */
+public class StorageDatasetWriter implements DatasetWriter {
+
+    private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+    private final LikeStorage likeStorage;
+    private final FriendsStorage friendsStorage;
+
+    public StorageDatasetWriter(UserStorage userStorage, FilmStorage filmStorage, LikeStorage likeStorage,
+                                FriendsStorage friendsStorage) {
+        this.userStorage = userStorage;
+        this.filmStorage = filmStorage;
+        this.likeStorage = likeStorage;
+        this.friendsStorage = friendsStorage;
+    }
+
+    @Override
+    public List<Long> writeUsers(List<User> users) {
+        return userStorage.createUsers(users).stream().map(User::getId).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> writeFilms(List<Film> films) {
+        return filmStorage.createFilms(films).stream().map(Film::getId).collect(Collectors.toList());
+    }
+
+    @Override
+    public void writeLikes(List<Like> likes, long[] likedAtMillis) {
+        likeStorage.addLikes(likes);
+    }
+
+    @Override
+    public void writeFriendships(List<long[]> friendships) {
+        friendships.forEach(friendship -> friendsStorage.addFriends(friendship[0], friendship[1]));
+    }
+
+    @Override
+    public void finish() {
+    }
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Value;
+
+/**
+ * Таблицы заполнены генератором данных в обход хранилищ. Индексы в памяти должны быть построены заново.
+ */
+@Value
+public class DatasetLoadedEvent {
+    long likesCount;
+    long friendshipsCount;
+}
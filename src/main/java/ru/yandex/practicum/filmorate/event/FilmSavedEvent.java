@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Film;
+
+/**
+ * Фильм создан или обновлен в хранилище. Содержит актуальное состояние фильма после сохранения.
+ */
+@Value
+public class FilmSavedEvent {
+    Film film;
+}
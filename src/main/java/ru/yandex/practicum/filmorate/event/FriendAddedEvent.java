@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Value;
+
+/**
+ * Пользователь userId добавил пользователя friendId в друзья.
+ */
+@Value
+public class FriendAddedEvent {
+    Long userId;
+    Long friendId;
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Value;
+
+/**
+ * Пользователь userId удалил пользователя friendId из друзей.
+ */
+@Value
+public class FriendDeletedEvent {
+    Long userId;
+    Long friendId;
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Пользователь поставил лайк фильму. Публикуется только если лайк действительно был добавлен.
+ */
+@Value
+public class LikeAddedEvent {
+    Long filmId;
+    Long userId;
+    // Время, когда был поставлен лайк
+    Instant likedAt;
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Пользователь удалил лайк фильма. Публикуется только если лайк действительно был удален.
+ */
+@Value
+public class LikeDeletedEvent {
+    Long filmId;
+    Long userId;
+    // Время, когда был поставлен удаленный лайк
+    Instant likedAt;
+}
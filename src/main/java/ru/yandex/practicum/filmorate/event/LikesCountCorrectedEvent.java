@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Value;
+
+/**
+ * Сохраненный счетчик лайков фильма разошелся с таблицей FilmLikes и был исправлен при сверке.
+ */
+@Value
+public class LikesCountCorrectedEvent {
+    Long filmId;
+    // Фактическое количество лайков фильма
+    int likesCount;
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import ru.yandex.practicum.filmorate.exceptions.FilmorateBadRequestException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Набор полей ответа, запрошенный параметром fields= (sparse fieldset).
+ * <p>
+ * Хранилища по набору решают, какие связанные данные дозагружать (лайки, жанры, друзья),
+ * а при сериализации остальные поля отбрасываются фильтром {@link #FILTER_ID}.
+ * Поле id входит в любой набор.
+ */
+@EqualsAndHashCode
+@ToString
+public final class Fields {
+
+    public static final String FILTER_ID = "fieldsFilter";
+
+    private static final Fields ALL = new Fields(null);
+
+    // null - все поля
+    private final Set<String> names;
+
+    private Fields(Set<String> names) {
+        this.names = names;
+    }
+
+    public static Fields all() {
+        return ALL;
+    }
+
+    public static Fields of(String... names) {
+        Set<String> fields = new LinkedHashSet<>();
+        fields.add("id");
+        fields.addAll(Arrays.asList(names));
+        return new Fields(Collections.unmodifiableSet(fields));
+    }
+
+    /**
+     * Разбор параметра fields= (имена через запятую). Если параметр не задан, возвращается defaults,
+     * неизвестные имена полей приводят к {@link FilmorateBadRequestException}.
+     */
+    public static Fields parse(String fields, Set<String> allowed, Fields defaults) {
+        if ((fields == null) || fields.isBlank()) {
+            return defaults;
+        }
+
+        Set<String> names = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        for (String name : names) {
+            if (!allowed.contains(name)) {
+                throw new FilmorateBadRequestException("Неизвестное поле в параметре 'fields': " + name);
+            }
+        }
+
+        return of(names.toArray(new String[0]));
+    }
+
+    public boolean contains(String name) {
+        return (names == null) || names.contains(name);
+    }
+
+    public FilterProvider toFilterProvider() {
+        SimpleBeanPropertyFilter filter = (names == null)
+                ? SimpleBeanPropertyFilter.serializeAll()
+                : SimpleBeanPropertyFilter.filterOutAllExcept(names);
+        return new SimpleFilterProvider().addFilter(FILTER_ID, filter);
+    }
+}
@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import lombok.Builder;
 import lombok.Data;
 import lombok.AllArgsConstructor;
@@ -21,7 +22,18 @@ import javax.validation.constraints.Size;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonFilter(Fields.FILTER_ID)
 public class Film {
+    public static final String GENRES_FIELD = "genres";
+    public static final String LIKES_LIST_FIELD = "likesList";
+
+    public static final Set<String> FIELDS = Set.of("id", "name", "description", GENRES_FIELD, "mpa",
+            "releaseDate", "duration", "likesCount", LIKES_LIST_FIELD);
+
+    // Набор полей списков по умолчанию: без списка лайков
+    public static final Fields SUMMARY_FIELDS = Fields.of("name", "description", GENRES_FIELD, "mpa",
+            "releaseDate", "duration", "likesCount");
+
     private Long id;
     @NotBlank(message = "Название фильма не может быть пустым")
     private String name;
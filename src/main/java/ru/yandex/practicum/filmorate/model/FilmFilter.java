@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Условия выборки каталога фильмов: жанр, рейтинг MPA, диапазон годов выпуска (включительно) и сортировка.
+ * Незаданное условие не ограничивает выборку.
+ * <p>
+ * Страницы читаются по ключу сортировки (keyset): afterId - ID последнего фильма предыдущей страницы,
+ * для сортировки {@link Sort#POPULAR} к нему добавляется afterLikesCount - его количество лайков.
+ */
+@Value
+@Builder(toBuilder = true)
+public class FilmFilter {
+    Integer genreId;
+    Integer mpaId;
+    Integer yearFrom;
+    Integer yearTo;
+    @Builder.Default
+    Sort sort = Sort.ID;
+    Long afterId;
+    Integer afterLikesCount;
+
+    public enum Sort {
+        // По возрастанию ID
+        ID,
+        // По убыванию количества лайков, при равенстве - по возрастанию ID
+        POPULAR
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import lombok.Builder;
 import lombok.Data;
 import lombok.AllArgsConstructor;
@@ -14,7 +15,14 @@ import java.util.Set;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonFilter(Fields.FILTER_ID)
 public class User {
+    public static final String FRIENDS_FIELD = "friends";
+
+    public static final Set<String> FIELDS = Set.of("id", "email", "login", "name", "birthday", FRIENDS_FIELD);
+
+    // Набор полей списков по умолчанию: без списка друзей
+    public static final Fields SUMMARY_FIELDS = Fields.of("email", "login", "name", "birthday");
 
     private Long id;
 //    @Pattern(regexp = "^[\\w-\\.]+@([\\w-]+\\.)+[\\w-]{2,}", message = "Проверьте правильность ввода адреса электронной почты")
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model.like;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Like {
+    private Long filmId;
+    private Long userId;
+}
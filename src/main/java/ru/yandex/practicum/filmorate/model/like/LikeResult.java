@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.model.like;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Результат обработки одного лайка при пакетной загрузке.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LikeResult {
+    private Long filmId;
+    private Long userId;
+    private LikeStatus status;
+}
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.model.like;
+
+public enum LikeStatus {
+    ADDED,
+    ALREADY_EXISTS,
+    FILM_NOT_FOUND,
+    USER_NOT_FOUND,
+    INVALID,
+    ERROR
+}
@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.model.like;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Ход сверки счетчиков FILM.LikesCount с таблицей FilmLikes: текущей, если она идет, иначе последней.
+ */
+@Value
+@Builder
+public class LikesCountReconciliation {
+
+    public enum State {
+        IDLE,
+        RUNNING,
+        FINISHED,
+        FAILED
+    }
+
+    State state;
+    Instant startedAt;
+    Instant finishedAt;
+    long chunksTotal;
+    long chunksDone;
+    long filmsChecked;
+    // Фильмы, счетчик которых был исправлен, и суммарное абсолютное расхождение по ним
+    long filmsCorrected;
+    long likesDrift;
+}
@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Статистика SQL-запросов в рамках одной единицы работы (HTTP-запроса или блока кода в тесте).
+ * <p>
+ * Статистика привязывается к потоку: пока она открыта, {@link SqlStatisticsDataSource} учитывает
+ * каждый выполненный запрос - количество, суммарное время и "форму" запроса (текст с литералами,
+ * замененными на ?). Одна и та же форма, выполненная много раз, обычно означает N+1.
+ */
+public final class SqlStatistics {
+
+    private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private int statementsCount;
+    private long totalNanos;
+    private final Map<String, Integer> countsByShape = new LinkedHashMap<>();
+
+    private SqlStatistics() {
+    }
+
+    /**
+     * Открывает статистику для текущего потока. Должна быть закрыта {@link #stop()}.
+     */
+    public static SqlStatistics start() {
+        SqlStatistics statistics = new SqlStatistics();
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Статистика запросов, выполненных action в текущем потоке. Для тестов:
+     * {@code assertTrue(SqlStatistics.measure(() -> storage.getFilmsList()).getStatementsCount() <= 3)}.
+     */
+    public static SqlStatistics measure(Runnable action) {
+        SqlStatistics previous = CURRENT.get();
+        SqlStatistics statistics = start();
+        try {
+            action.run();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                stop();
+            }
+        }
+        return statistics;
+    }
+
+    static SqlStatistics current() {
+        return CURRENT.get();
+    }
+
+    void record(String sql, long nanos) {
+        statementsCount++;
+        totalNanos += nanos;
+        countsByShape.merge(shape(sql), 1, Integer::sum);
+    }
+
+    public int getStatementsCount() {
+        return statementsCount;
+    }
+
+    public long getTotalTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    /**
+     * Формы запросов, выполненных не меньше threshold раз, с количеством выполнений.
+     */
+    public Map<String, Integer> getRepeatedShapes(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        countsByShape.forEach((shape, count) -> {
+            if (count >= threshold) {
+                repeated.put(shape, count);
+            }
+        });
+        return repeated;
+    }
+
+    static String shape(String sql) {
+        if (sql == null) {
+            return "<batch>";
+        }
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+}
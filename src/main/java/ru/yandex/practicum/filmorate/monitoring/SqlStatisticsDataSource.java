@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.Set;
+
+/**
+ * Обертка источника данных, которая передает выполненные запросы в {@link SqlStatistics} текущего потока.
+ * <p>
+ * Соединения оборачиваются только если статистика открыта в момент получения соединения, поэтому вне
+ * HTTP-запросов (планировщик, инициализация схемы) накладных расходов нет. Пакет (executeBatch) считается
+ * одним запросом.
+ */
+public class SqlStatisticsDataSource extends DelegatingDataSource {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    public SqlStatisticsDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private static Connection wrap(Connection connection) {
+        if (SqlStatistics.current() == null) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(SqlStatisticsDataSource.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = SqlStatisticsDataSource.invoke(target, method, args);
+
+            Class<?> statementType;
+            switch (method.getName()) {
+                case "createStatement":
+                    statementType = Statement.class;
+                    break;
+                case "prepareStatement":
+                    statementType = PreparedStatement.class;
+                    break;
+                case "prepareCall":
+                    statementType = CallableStatement.class;
+                    break;
+                default:
+                    return result;
+            }
+
+            String sql = ((args != null) && (args.length > 0) && (args[0] instanceof String)) ? (String) args[0] : null;
+            return Proxy.newProxyInstance(SqlStatisticsDataSource.class.getClassLoader(),
+                    new Class<?>[] {statementType}, new StatementHandler(result, sql));
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Object target;
+        private final String preparedSql;
+
+        private StatementHandler(Object target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!EXECUTE_METHODS.contains(method.getName())) {
+                return SqlStatisticsDataSource.invoke(target, method, args);
+            }
+
+            String sql = ((args != null) && (args.length > 0) && (args[0] instanceof String)) ? (String) args[0] : preparedSql;
+            long startedAt = System.nanoTime();
+            try {
+                return SqlStatisticsDataSource.invoke(target, method, args);
+            } finally {
+                SqlStatistics statistics = SqlStatistics.current();
+                if (statistics != null) {
+                    statistics.record(sql, System.nanoTime() - startedAt);
+                }
+            }
+        }
+    }
+}
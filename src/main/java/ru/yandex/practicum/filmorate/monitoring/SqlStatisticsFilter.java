@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+/**
+ * Учет SQL-запросов каждого HTTP-запроса.
+ * <p>
+ * Количество запросов, их суммарное время и количество повторяющихся форм запросов возвращаются
+ * в заголовках {@value #STATEMENTS_HEADER}, {@value #TIME_HEADER} и {@value #REPEATED_HEADER}. Заголовки
+ * выставляются перед началом записи тела ответа, поэтому для потоковой выдачи в них попадают только
+ * запросы, выполненные до ее начала. Если запросов больше filmorate.sql.budget или какая-то форма
+ * повторилась не меньше filmorate.sql.repeat-threshold раз, в лог пишется предупреждение.
+ */
+@Slf4j
+@Component
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    public static final String TIME_HEADER = "X-Sql-Time-Ms";
+    public static final String REPEATED_HEADER = "X-Sql-Repeated-Shapes";
+
+    @Value("${filmorate.sql.budget:10}")
+    private int budget;
+
+    @Value("${filmorate.sql.repeat-threshold:3}")
+    private int repeatThreshold;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlStatistics statistics = SqlStatistics.start();
+        StatisticsResponse statisticsResponse = new StatisticsResponse(response, statistics);
+        try {
+            filterChain.doFilter(request, statisticsResponse);
+        } finally {
+            SqlStatistics.stop();
+            statisticsResponse.writeHeaders();
+            report(request, statistics);
+        }
+    }
+
+    private void report(HttpServletRequest request, SqlStatistics statistics) {
+        String route = request.getMethod() + " " + request.getRequestURI();
+        Map<String, Integer> repeatedShapes = statistics.getRepeatedShapes(repeatThreshold);
+
+        if (statistics.getStatementsCount() > budget) {
+            log.warn("Превышен бюджет SQL-запросов: {} - {} запросов при бюджете {}, {} мс",
+                    route, statistics.getStatementsCount(), budget, statistics.getTotalTimeMillis());
+        }
+        repeatedShapes.forEach((shape, count) ->
+                log.warn("Возможный N+1: {} - запрос выполнен {} раз: {}", route, count, shape));
+
+        log.debug("{} - SQL-запросов: {}, {} мс", route, statistics.getStatementsCount(), statistics.getTotalTimeMillis());
+    }
+
+    /**
+     * Ответ, который выставляет заголовки статистики перед первой записью тела.
+     */
+    private class StatisticsResponse extends HttpServletResponseWrapper {
+        private final SqlStatistics statistics;
+        private boolean headersWritten;
+
+        StatisticsResponse(HttpServletResponse response, SqlStatistics statistics) {
+            super(response);
+            this.statistics = statistics;
+        }
+
+        void writeHeaders() {
+            if (headersWritten || isCommitted()) {
+                return;
+            }
+            headersWritten = true;
+            setHeader(STATEMENTS_HEADER, String.valueOf(statistics.getStatementsCount()));
+            setHeader(TIME_HEADER, String.valueOf(statistics.getTotalTimeMillis()));
+            setHeader(REPEATED_HEADER, String.valueOf(statistics.getRepeatedShapes(repeatThreshold).size()));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeaders();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeaders();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeaders();
+            super.sendError(sc);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики вызовов хранилища:
+ * <ul>
+ *     <li>filmorate.storage - таймер с перцентилями p50/p99/p999 по хранилищу, методу и исключению;</li>
+ *     <li>filmorate.storage.rows - распределение количества строк в результатах-коллекциях;</li>
+ *     <li>filmorate.storage.errors - счетчик ошибок по типу исключения.</li>
+ * </ul>
+ * Реестр берется лениво: перехватчик создается вместе с постпроцессором раньше остальных бинов.
+ */
+public class StorageMetricsInterceptor implements MethodInterceptor {
+
+    public static final String TIMER = "filmorate.storage";
+    public static final String ROWS = "filmorate.storage.rows";
+    public static final String ERRORS = "filmorate.storage.errors";
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+    private static final String NONE = "none";
+
+    private final String storage;
+    private final ObjectProvider<MeterRegistry> registryProvider;
+
+    public StorageMetricsInterceptor(String storage, ObjectProvider<MeterRegistry> registryProvider) {
+        this.storage = storage;
+        this.registryProvider = registryProvider;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        MeterRegistry registry = registryProvider.getIfAvailable();
+        if (registry == null) {
+            return invocation.proceed();
+        }
+
+        String method = invocation.getMethod().getName();
+        long startedAt = System.nanoTime();
+        String exception = NONE;
+        try {
+            Object result = invocation.proceed();
+            recordRows(registry, method, result);
+            return result;
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            registry.counter(ERRORS, "storage", storage, "method", method, "exception", exception).increment();
+            throw e;
+        } finally {
+            Timer.builder(TIMER)
+                    .tags("storage", storage, "method", method, "exception", exception)
+                    .publishPercentiles(PERCENTILES)
+                    .register(registry)
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void recordRows(MeterRegistry registry, String method, Object result) {
+        int rows;
+        if (result instanceof Collection) {
+            rows = ((Collection<?>) result).size();
+        } else if (result instanceof Map) {
+            rows = ((Map<?, ?>) result).size();
+        } else {
+            return;
+        }
+        DistributionSummary.builder(ROWS)
+                .tags("storage", storage, "method", method)
+                .publishPercentiles(PERCENTILES)
+                .register(registry)
+                .record(rows);
+    }
+}
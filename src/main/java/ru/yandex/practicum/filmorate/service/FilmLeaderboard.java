@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.DatasetLoadedEvent;
+import ru.yandex.practicum.filmorate.event.FilmSavedEvent;
+import ru.yandex.practicum.filmorate.event.LikeAddedEvent;
+import ru.yandex.practicum.filmorate.event.LikeDeletedEvent;
+import ru.yandex.practicum.filmorate.event.LikesCountCorrectedEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Рейтинг фильмов по количеству лайков, который поддерживается в памяти инкрементально
+ * (см. {@link LikesRanking}). При старте рейтинг строится по значениям LikesCount из хранилища.
+ * <p>
+ * Сохранение фильма счетчик не меняет: LikesCount в событии прочитан без блокировки лайков и может не учитывать
+ * лайки, события о которых рейтинг уже получил. Из события берется только счетчик нового фильма.
+ */
+@Slf4j
+@Component
+public class FilmLeaderboard {
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    private final LikesRanking ranking = new LikesRanking();
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Long, Integer> likesCounts = filmStorage.getLikesCounts();
+
+        ranking.clear();
+        likesCounts.forEach(this::setLikesCount);
+
+        log.info("Рейтинг популярных фильмов построен. Количество фильмов: {}", likesCounts.size());
+    }
+
+    public List<Long> getTopFilmIds(int count) {
+        return ranking.getTopFilmIds(count);
+    }
+
+    public int getLikesCount(Long filmId) {
+        return ranking.getLikesCount(filmId);
+    }
+
+    public void setLikesCount(Long filmId, Integer likesCount) {
+        ranking.setLikesCount(filmId, likesCount);
+    }
+
+    public void addLikes(Long filmId, int delta) {
+        ranking.addLikes(filmId, delta);
+    }
+
+    @EventListener
+    public void onDatasetLoaded(DatasetLoadedEvent event) {
+        rebuild();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onFilmSaved(FilmSavedEvent event) {
+        Integer likesCount = event.getFilm().getLikesCount();
+        ranking.putIfAbsent(event.getFilm().getId(), (likesCount != null) ? likesCount : 0);
+    }
+
+    @EventListener
+    public void onLikeAdded(LikeAddedEvent event) {
+        addLikes(event.getFilmId(), 1);
+    }
+
+    @EventListener
+    public void onLikeDeleted(LikeDeletedEvent event) {
+        addLikes(event.getFilmId(), -1);
+    }
+
+    @EventListener
+    public void onLikesCountCorrected(LikesCountCorrectedEvent event) {
+        setLikesCount(event.getFilmId(), event.getLikesCount());
+    }
+}
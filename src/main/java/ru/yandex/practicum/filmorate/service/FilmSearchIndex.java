@@ -0,0 +1,179 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.DatasetLoadedEvent;
+import ru.yandex.practicum.filmorate.event.FilmSavedEvent;
+import ru.yandex.practicum.filmorate.model.Fields;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Инвертированный индекс по названию и описанию фильмов для поиска в памяти.
+ * <p>
+ * Текст разбивается на слова в нижнем регистре (ё приравнивается к е). Для каждого слова хранится
+ * список фильмов с весом: слово из названия весит {@value #NAME_WEIGHT}, из описания - {@value #DESCRIPTION_WEIGHT}.
+ * Слова лежат в отсортированной карте, поэтому все слова с заданным префиксом читаются одним диапазоном.
+ * Каждое слово запроса должно совпасть со словом фильма целиком или как префикс (совпадение по префиксу
+ * весит вдвое меньше). К релевантности добавляется популярность по количеству лайков из {@link FilmLeaderboard}:
+ * она растет с логарифмом лайков, но всегда меньше {@value #RELEVANCE_STEP} - наименьшей разницы между
+ * релевантностями. Поэтому популярность упорядочивает только фильмы с равной релевантностью и, например,
+ * не перебивает совпадение по названию совпадением по описанию.
+ * <p>
+ * Индекс строится при старте и обновляется по {@link FilmSavedEvent}, изменения одного фильма сериализуются
+ * блокировкой его ключа. Опустевшие списки фильмов у слов не удаляются, при поиске они просто пропускаются.
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final double PREFIX_FACTOR = 0.5;
+    // Все веса совпадений кратны этому шагу: веса слов целые, а PREFIX_FACTOR = 0.5
+    private static final double RELEVANCE_STEP = PREFIX_FACTOR * DESCRIPTION_WEIGHT;
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private FilmLeaderboard filmLeaderboard;
+
+    private final NavigableMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final Map<Long, Map<String, Integer>> termsByFilmId = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        postings.clear();
+        termsByFilmId.clear();
+
+        AtomicLong filmsCount = new AtomicLong();
+        filmStorage.forEachFilm(Fields.of("name", "description"), film -> {
+            index(film);
+            filmsCount.incrementAndGet();
+        });
+
+        log.info("Поисковый индекс фильмов построен. Количество фильмов: {}, слов: {}", filmsCount, postings.size());
+    }
+
+    /**
+     * ID не более limit фильмов, подходящих под запрос, в порядке убывания релевантности с учетом популярности.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, Double> scores = null;
+        for (String queryTerm : new LinkedHashSet<>(queryTerms)) {
+            Map<Long, Double> termScores = match(queryTerm, scores);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                Map<Long, Double> previous = scores;
+                termScores.replaceAll((filmId, score) -> score + previous.get(filmId));
+                scores = termScores;
+            }
+            if (scores.isEmpty()) {
+                return new ArrayList<>();
+            }
+        }
+
+        return top(scores, limit);
+    }
+
+    public void index(Film film) {
+        Map<String, Integer> terms = new HashMap<>();
+        tokenize(film.getName()).forEach(term -> terms.merge(term, NAME_WEIGHT, Integer::sum));
+        tokenize(film.getDescription()).forEach(term -> terms.merge(term, DESCRIPTION_WEIGHT, Integer::sum));
+
+        termsByFilmId.compute(film.getId(), (filmId, oldTerms) -> {
+            if (oldTerms != null) {
+                oldTerms.keySet().stream()
+                        .filter(term -> !terms.containsKey(term))
+                        .forEach(term -> postings.getOrDefault(term, Map.of()).remove(filmId));
+            }
+            terms.forEach((term, weight) ->
+                    postings.computeIfAbsent(term, t -> new ConcurrentHashMap<>()).put(filmId, weight));
+            return terms;
+        });
+    }
+
+    @EventListener
+    public void onDatasetLoaded(DatasetLoadedEvent event) {
+        rebuild();
+    }
+
+    @EventListener
+    public void onFilmSaved(FilmSavedEvent event) {
+        index(event.getFilm());
+    }
+
+    /**
+     * Лучший вес совпадения queryTerm для каждого фильма. Если candidates задан, учитываются только эти фильмы.
+     */
+    private Map<Long, Double> match(String queryTerm, Map<Long, Double> candidates) {
+        Map<Long, Double> scores = new HashMap<>();
+        for (Map.Entry<String, Map<Long, Integer>> entry : postings.tailMap(queryTerm, true).entrySet()) {
+            String term = entry.getKey();
+            if (!term.startsWith(queryTerm)) {
+                break;
+            }
+
+            double factor = term.equals(queryTerm) ? 1.0 : PREFIX_FACTOR;
+            entry.getValue().forEach((filmId, weight) -> {
+                if ((candidates == null) || candidates.containsKey(filmId)) {
+                    scores.merge(filmId, weight * factor, Math::max);
+                }
+            });
+        }
+        return scores;
+    }
+
+    private List<Long> top(Map<Long, Double> relevance, int limit) {
+        Comparator<Map.Entry<Long, Double>> byScore = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<Long, Double>> heap = new PriorityQueue<>(byScore);
+
+        relevance.forEach((filmId, score) -> {
+            double popularity = Math.log1p(filmLeaderboard.getLikesCount(filmId));
+            double rank = score + RELEVANCE_STEP * popularity / (popularity + 1);
+            heap.add(Map.entry(filmId, rank));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        });
+
+        LinkedList<Long> filmIds = new LinkedList<>();
+        while (!heap.isEmpty()) {
+            filmIds.addFirst(heap.poll().getKey());
+        }
+        return new ArrayList<>(filmIds);
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+
+        for (String term : NON_WORD.split(text.toLowerCase(Locale.ROOT).replace('ё', 'е'))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+}
@@ -1,30 +1,87 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateBadRequestException;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
+import ru.yandex.practicum.filmorate.model.Fields;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.like.Like;
+import ru.yandex.practicum.filmorate.model.like.LikeResult;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.like.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
+
+import static ru.yandex.practicum.filmorate.service.PageParams.checkLimit;
+import static ru.yandex.practicum.filmorate.service.PageParams.checkPageParams;
 
 @Service
 public class FilmService {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+
     @Autowired
-    @Qualifier("filmDbStorage")
     private FilmStorage filmStorage;
 
     @Autowired
-    @Qualifier("likeDbStorage")
     private LikeStorage likeStorage;
 
-    public List<Film> getFilmsList() {
-        return filmStorage.getFilmsList();
+    @Autowired
+    private UserStorage userStorage;
+
+    @Autowired
+    private FilmLeaderboard filmLeaderboard;
+
+    @Autowired
+    private FilmSearchIndex filmSearchIndex;
+
+    @Autowired
+    private TrendingFilms trendingFilms;
+
+    public List<Film> getFilmsList(Fields fields) {
+        return filmStorage.getFilmsList(fields);
+    }
+
+    public List<Film> getFilmsPage(Long after, Integer limit, Fields fields) {
+        Long afterId = (after != null) ? after : 0L;
+        Integer pageSize = (limit != null) ? limit : DEFAULT_PAGE_SIZE;
+
+        checkPageParams(afterId, pageSize);
+
+        return filmStorage.getFilmsPage(afterId, pageSize, fields);
+    }
+
+    /**
+     * Страница каталога с фильтрами. Для сортировки по популярности без afterLikesCount курсором
+     * служит текущее количество лайков фильма afterId.
+     */
+    public List<Film> getFilmsCatalog(FilmFilter filter, Integer limit, Fields fields) {
+        Integer pageSize = (limit != null) ? limit : DEFAULT_PAGE_SIZE;
+
+        checkPageParams((filter.getAfterId() != null) ? filter.getAfterId() : 0L, pageSize);
+
+        if ((filter.getYearFrom() != null) && (filter.getYearTo() != null) && (filter.getYearFrom() > filter.getYearTo())) {
+            throw new FilmorateBadRequestException("Параметр 'yearFrom' не может быть больше 'yearTo'");
+        }
+
+        if ((filter.getSort() == FilmFilter.Sort.POPULAR) && (filter.getAfterId() != null)
+                && (filter.getAfterLikesCount() == null)) {
+            Film after = getFilm(filter.getAfterId(), Fields.of("likesCount"));
+            filter = filter.toBuilder().afterLikesCount(after.getLikesCount()).build();
+        }
+
+        return filmStorage.getFilmsFiltered(filter, pageSize, fields);
+    }
+
+    public void forEachFilm(Fields fields, Consumer<Film> action) {
+        filmStorage.forEachFilm(fields, action);
     }
 
     public Film createFilm(Film film) {
@@ -32,15 +89,20 @@ public class FilmService {
         return filmStorage.createFilm(film);
     }
 
+    public List<Film> createFilms(List<Film> films) {
+        films.forEach(this::checkReleaseDate);
+        return filmStorage.createFilms(films);
+    }
+
     public Film updateFilm(Film film) {
         checkReleaseDate(film);
         return filmStorage.updateFilm(film);
     }
 
-    public Film getFilm(Long filmId) {
+    public Film getFilm(Long filmId, Fields fields) {
         checkFilmId(filmId);
 
-        Film film = filmStorage.getFilm(filmId);
+        Film film = filmStorage.getFilm(filmId, fields);
         if (film == null) {
             throw new FilmorateNotFoundException("Объект с id = " + filmId + " не найден");
         }
@@ -61,14 +123,66 @@ public class FilmService {
         likeStorage.deleteLike(filmId, userId);
     }
 
-    public List<Film> likedFilmsList (Long count) {
+    public List<LikeResult> addLikes(List<Like> likes) {
+        return likeStorage.addLikes(likes);
+    }
+
+    /**
+     * Страница пользователей, лайкнувших фильм, в порядке возрастания ID.
+     */
+    public List<User> getFilmLikers(Long filmId, Long after, Integer limit, Fields fields) {
+        Long afterId = (after != null) ? after : 0L;
+        Integer pageSize = (limit != null) ? limit : DEFAULT_PAGE_SIZE;
+
+        checkPageParams(afterId, pageSize);
+
+        getFilm(filmId, Fields.of());
+
+        return userStorage.getUsersByIds(likeStorage.getLikerIds(filmId, afterId, pageSize), fields);
+    }
+
+    public List<Film> likedFilmsList (Long count, Fields fields) {
         Long filmsCount = 10L;
 
         if (count != null) {
             filmsCount = count;
         }
 
-        return filmStorage.likedFilmsList(filmsCount);
+        if (filmsCount <= 0) {
+            throw new FilmorateBadRequestException("Параметр 'count' должен быть положительным");
+        }
+
+        return filmStorage.getFilmsByIds(filmLeaderboard.getTopFilmIds((int) Math.min(filmsCount, Integer.MAX_VALUE)), fields);
+    }
+
+    /**
+     * Поиск по названию и описанию через {@link FilmSearchIndex}: таблица фильмов не сканируется,
+     * из хранилища читаются только найденные фильмы.
+     */
+    public List<Film> searchFilms(String query, Integer limit, Fields fields) {
+        Integer searchLimit = (limit != null) ? limit : DEFAULT_SEARCH_LIMIT;
+
+        if ((query == null) || query.isBlank()) {
+            throw new FilmorateBadRequestException("Параметр 'q' не может быть пустым");
+        }
+
+        checkLimit(searchLimit);
+
+        return filmStorage.getFilmsByIds(filmSearchIndex.search(query, searchLimit), fields);
+    }
+
+    /**
+     * Первые count фильмов по количеству лайков за окно window (1h, 24h или 7d, по умолчанию 24h).
+     */
+    public List<Film> getTrendingFilms(String window, Long count, Fields fields) {
+        TrendingFilms.Window trendingWindow = (window != null) ? TrendingFilms.Window.parse(window) : TrendingFilms.Window.DAY;
+        Long filmsCount = (count != null) ? count : 10L;
+
+        if (filmsCount <= 0) {
+            throw new FilmorateBadRequestException("Параметр 'count' должен быть положительным");
+        }
+
+        return filmStorage.getFilmsByIds(trendingFilms.getTopFilmIds(trendingWindow, (int) Math.min(filmsCount, Integer.MAX_VALUE)), fields);
     }
 
     private void checkFilmId(Long filmId) {
@@ -14,7 +14,7 @@ import java.util.List;
 public class GenreService {
 
     @Autowired
-    @Qualifier("genreDbStorage")
+    @Qualifier("genreCachedStorage")
     private GenreStorage genreStorage;
 
     public List<Genre> getGenreList() {
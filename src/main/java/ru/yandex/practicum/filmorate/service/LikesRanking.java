@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Счетчики лайков фильмов с упорядоченным рейтингом.
+ * <p>
+ * Фильмы хранятся в отсортированном наборе (больше лайков - выше, при равенстве - меньший ID выше),
+ * поэтому первые N фильмов читаются за O(N) без сортировки. Изменения одного фильма сериализуются
+ * блокировкой его ключа в {@link ConcurrentHashMap#compute}, изменения разных фильмов выполняются параллельно.
+ * Фильм с нулевым счетчиком остается в рейтинге, если не удален через {@link #remove(Long)}.
+ */
+class LikesRanking {
+
+    private final Map<Long, Integer> likesCountByFilmId = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>();
+
+    List<Long> getTopFilmIds(int count) {
+        // Во время обновления фильм может кратковременно присутствовать в наборе дважды
+        Set<Long> filmIds = new LinkedHashSet<>();
+        for (Entry entry : ranking) {
+            if (filmIds.size() >= count) {
+                break;
+            }
+            filmIds.add(entry.filmId);
+        }
+        return new ArrayList<>(filmIds);
+    }
+
+    int getLikesCount(Long filmId) {
+        return likesCountByFilmId.getOrDefault(filmId, 0);
+    }
+
+    void setLikesCount(Long filmId, int likesCount) {
+        likesCountByFilmId.compute(filmId, (id, oldCount) -> move(id, oldCount, Math.max(likesCount, 0)));
+    }
+
+    /**
+     * Добавляет фильм со счетчиком likesCount, если его еще нет в рейтинге.
+     */
+    void putIfAbsent(Long filmId, int likesCount) {
+        likesCountByFilmId.computeIfAbsent(filmId, id -> move(id, null, Math.max(likesCount, 0)));
+    }
+
+    void addLikes(Long filmId, int delta) {
+        likesCountByFilmId.compute(filmId, (id, oldCount) ->
+                move(id, oldCount, Math.max(((oldCount != null) ? oldCount : 0) + delta, 0)));
+    }
+
+    /**
+     * Убирает фильм из рейтинга.
+     */
+    void remove(Long filmId) {
+        likesCountByFilmId.computeIfPresent(filmId, (id, oldCount) -> {
+            ranking.remove(new Entry(id, oldCount));
+            return null;
+        });
+    }
+
+    void clear() {
+        likesCountByFilmId.clear();
+        ranking.clear();
+    }
+
+    private Integer move(Long filmId, Integer oldCount, int newCount) {
+        // Сначала добавляем новую позицию, потом удаляем старую: читатель может увидеть дубль, но не потеряет фильм
+        ranking.add(new Entry(filmId, newCount));
+        if ((oldCount != null) && (oldCount != newCount)) {
+            ranking.remove(new Entry(filmId, oldCount));
+        }
+        return newCount;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final long filmId;
+        private final int likesCount;
+
+        private Entry(long filmId, int likesCount) {
+            this.filmId = filmId;
+            this.likesCount = likesCount;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int result = Integer.compare(o.likesCount, likesCount);
+            return (result != 0) ? result : Long.compare(filmId, o.filmId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Entry entry = (Entry) o;
+            return (filmId == entry.filmId) && (likesCount == entry.likesCount);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(filmId) + likesCount;
+        }
+    }
+}
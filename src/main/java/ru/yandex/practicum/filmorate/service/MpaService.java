@@ -14,7 +14,7 @@ import java.util.List;
 public class MpaService {
 
     @Autowired
-    @Qualifier("mpaDbStorage")
+    @Qualifier("mpaCachedStorage")
     private MpaStorage mpaStorage;
 
     public List<MPA> getMpaList() {
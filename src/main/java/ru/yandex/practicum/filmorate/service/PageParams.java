@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.exceptions.FilmorateBadRequestException;
+
+/**
+ * Проверка параметров страниц after и limit, общая для сервисов фильмов и пользователей.
+ */
+final class PageParams {
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private PageParams() {
+    }
+
+    static void checkPageParams(Long after, Integer limit) {
+        if (after < 0) {
+            throw new FilmorateBadRequestException("Параметр 'after' не может быть отрицательным");
+        }
+
+        checkLimit(limit);
+    }
+
+    static void checkLimit(Integer limit) {
+        if ((limit <= 0) || (limit > MAX_PAGE_SIZE)) {
+            throw new FilmorateBadRequestException("Параметр 'limit' должен быть в диапазоне от 1 до " + MAX_PAGE_SIZE);
+        }
+    }
+}
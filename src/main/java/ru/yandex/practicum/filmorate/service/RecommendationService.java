@@ -0,0 +1,224 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.DatasetLoadedEvent;
+import ru.yandex.practicum.filmorate.event.LikeAddedEvent;
+import ru.yandex.practicum.filmorate.event.LikeDeletedEvent;
+import ru.yandex.practicum.filmorate.exceptions.FilmorateBadRequestException;
+import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
+import ru.yandex.practicum.filmorate.model.Fields;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Рекомендации фильмов по модели item-item: два фильма считаются похожими, если их лайкают одни и те же пользователи.
+ * <p>
+ * В памяти хранятся лайки каждого пользователя, количество лайков каждого фильма и матрица совместных лайков
+ * (для каждого фильма - сколько пользователей лайкнули его вместе с другим фильмом). Лайк пользователя
+ * с историей из d фильмов обновляет 2 * d ячеек матрицы, полный пересчет не нужен. Сходство фильмов - косинусное:
+ * co(f, g) / sqrt(likes(f) * likes(g)). Оценка фильма для пользователя - сумма его сходства с фильмами,
+ * которые пользователь уже лайкнул, поэтому при расчете просматриваются только соседи этих фильмов.
+ * Для длинной истории расчет делится между потоками через fork-join.
+ */
+@Slf4j
+@Service
+public class RecommendationService {
+
+    private static final int DEFAULT_RECOMMENDATIONS_COUNT = 10;
+    private static final int MAX_RECOMMENDATIONS_COUNT = 1000;
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Autowired
+    private LikeStorage likeStorage;
+
+    private final Map<Long, Set<Long>> likedFilmsByUserId = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> likesCountByFilmId = new ConcurrentHashMap<>();
+    private final Map<Long, Map<Long, Integer>> coLikesByFilmId = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        likedFilmsByUserId.clear();
+        likesCountByFilmId.clear();
+        coLikesByFilmId.clear();
+        likeStorage.forEachLike(this::addLike);
+
+        log.info("Модель рекомендаций построена. Количество фильмов с лайками: {}", likesCountByFilmId.size());
+    }
+
+    public List<Film> getRecommendations(Long userId, Integer count, Fields fields) {
+        int recommendationsCount = (count != null) ? count : DEFAULT_RECOMMENDATIONS_COUNT;
+
+        if ((recommendationsCount <= 0) || (recommendationsCount > MAX_RECOMMENDATIONS_COUNT)) {
+            throw new FilmorateBadRequestException("Параметр 'count' должен быть в диапазоне от 1 до " + MAX_RECOMMENDATIONS_COUNT);
+        }
+
+        if (userStorage.getUser(userId, User.SUMMARY_FIELDS) == null) {
+            throw new FilmorateNotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+
+        return filmStorage.getFilmsByIds(getRecommendedFilmIds(userId, recommendationsCount), fields);
+    }
+
+    /**
+     * ID фильмов, которые пользователь еще не лайкнул, по убыванию оценки (при равенстве - по возрастанию ID).
+     */
+    public List<Long> getRecommendedFilmIds(Long userId, int count) {
+        Set<Long> likedFilms = likedFilmsByUserId.get(userId);
+        if (likedFilms == null) {
+            return new ArrayList<>();
+        }
+
+        Long[] liked;
+        synchronized (likedFilms) {
+            liked = likedFilms.toArray(new Long[0]);
+        }
+        Map<Long, Double> scores = new ScoreTask(liked, new HashSet<>(Arrays.asList(liked)), 0, liked.length).invoke();
+
+        Comparator<Map.Entry<Long, Double>> byScore = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(count + 1, byScore);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            top.offer(entry);
+            if (top.size() > count) {
+                top.poll();
+            }
+        }
+
+        Long[] filmIds = new Long[top.size()];
+        for (int i = filmIds.length - 1; i >= 0; i--) {
+            filmIds[i] = top.poll().getKey();
+        }
+        return Arrays.asList(filmIds);
+    }
+
+    @EventListener
+    public void onDatasetLoaded(DatasetLoadedEvent event) {
+        rebuild();
+    }
+
+    @EventListener
+    public void onLikeAdded(LikeAddedEvent event) {
+        addLike(event.getFilmId(), event.getUserId());
+    }
+
+    @EventListener
+    public void onLikeDeleted(LikeDeletedEvent event) {
+        deleteLike(event.getFilmId(), event.getUserId());
+    }
+
+    private void addLike(Long filmId, Long userId) {
+        Set<Long> likedFilms = likedFilmsByUserId.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet());
+        synchronized (likedFilms) {
+            if (!likedFilms.add(filmId)) {
+                return;
+            }
+            for (Long otherFilmId : likedFilms) {
+                if (!otherFilmId.equals(filmId)) {
+                    addCoLikes(filmId, otherFilmId, 1);
+                    addCoLikes(otherFilmId, filmId, 1);
+                }
+            }
+            likesCountByFilmId.merge(filmId, 1, Integer::sum);
+        }
+    }
+
+    private void deleteLike(Long filmId, Long userId) {
+        Set<Long> likedFilms = likedFilmsByUserId.get(userId);
+        if (likedFilms == null) {
+            return;
+        }
+        synchronized (likedFilms) {
+            if (!likedFilms.remove(filmId)) {
+                return;
+            }
+            for (Long otherFilmId : likedFilms) {
+                addCoLikes(filmId, otherFilmId, -1);
+                addCoLikes(otherFilmId, filmId, -1);
+            }
+            likesCountByFilmId.computeIfPresent(filmId, (id, likesCount) -> (likesCount > 1) ? likesCount - 1 : null);
+        }
+    }
+
+    private void addCoLikes(Long filmId, Long otherFilmId, int delta) {
+        coLikesByFilmId.computeIfAbsent(filmId, id -> new ConcurrentHashMap<>())
+                .compute(otherFilmId, (id, coLikes) -> {
+                    int result = ((coLikes != null) ? coLikes : 0) + delta;
+                    return (result > 0) ? result : null;
+                });
+    }
+
+    /**
+     * Оценка кандидатов по части истории пользователя liked[from, to). Если часть больше порога,
+     * она делится пополам, половины считаются параллельно, а результаты складываются.
+     */
+    private class ScoreTask extends RecursiveTask<Map<Long, Double>> {
+        private static final int THRESHOLD = 32;
+
+        private final Long[] liked;
+        private final Set<Long> excluded;
+        private final int from;
+        private final int to;
+
+        private ScoreTask(Long[] liked, Set<Long> excluded, int from, int to) {
+            this.liked = liked;
+            this.excluded = excluded;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Long, Double> compute() {
+            if (to - from <= THRESHOLD) {
+                return computeDirectly();
+            }
+
+            int middle = (from + to) >>> 1;
+            ScoreTask left = new ScoreTask(liked, excluded, from, middle);
+            left.fork();
+            Map<Long, Double> rightScores = new ScoreTask(liked, excluded, middle, to).compute();
+            Map<Long, Double> leftScores = left.join();
+
+            Map<Long, Double> larger = (leftScores.size() >= rightScores.size()) ? leftScores : rightScores;
+            Map<Long, Double> smaller = (larger == leftScores) ? rightScores : leftScores;
+            smaller.forEach((filmId, score) -> larger.merge(filmId, score, Double::sum));
+            return larger;
+        }
+
+        private Map<Long, Double> computeDirectly() {
+            Map<Long, Double> scores = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                Long filmId = liked[i];
+                Map<Long, Integer> neighbours = coLikesByFilmId.get(filmId);
+                if (neighbours == null) {
+                    continue;
+                }
+
+                int filmLikes = likesCountByFilmId.getOrDefault(filmId, 0);
+                neighbours.forEach((neighbourId, coLikes) -> {
+                    int neighbourLikes = likesCountByFilmId.getOrDefault(neighbourId, 0);
+                    if (excluded.contains(neighbourId) || (filmLikes == 0) || (neighbourLikes == 0)) {
+                        return;
+                    }
+                    scores.merge(neighbourId, coLikes / Math.sqrt((double) filmLikes * neighbourLikes), Double::sum);
+                });
+            }
+            return scores;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.DatasetLoadedEvent;
+import ru.yandex.practicum.filmorate.event.LikeAddedEvent;
+import ru.yandex.practicum.filmorate.event.LikeDeletedEvent;
+import ru.yandex.practicum.filmorate.exceptions.FilmorateBadRequestException;
+import ru.yandex.practicum.filmorate.storage.like.LikeStorage;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Популярность фильмов за последний час, сутки и неделю.
+ * <p>
+ * Лайки раскладываются по минутным корзинам кольцевого буфера на {@link Window#WEEK} минут: корзина хранит
+ * количество лайков каждого фильма за свою минуту. Для каждого окна поддерживается свой {@link LikesRanking}
+ * с суммой корзин, попадающих в окно. Когда минута выходит из окна, ее корзина вычитается из рейтинга окна,
+ * поэтому запрос первых N фильмов читает только N записей рейтинга, а не таблицу FilmLikes.
+ * Окно сдвигается при каждом изменении и запросе, точность границы окна - одна минута.
+ * <p>
+ * Корзины меняются под общей блокировкой, рейтинги читаются без нее: чтение берет блокировку, только когда
+ * наступила новая минута и окна пора сдвинуть. При старте окна заполняются
+ * лайками за последнюю неделю по сохраненному времени лайка.
+ */
+@Slf4j
+@Component
+public class TrendingFilms {
+
+    public enum Window {
+        HOUR("1h", 60),
+        DAY("24h", 24 * 60),
+        WEEK("7d", 7 * 24 * 60);
+
+        private final String name;
+        private final int minutes;
+
+        Window(String name, int minutes) {
+            this.name = name;
+            this.minutes = minutes;
+        }
+
+        public static Window parse(String name) {
+            for (Window window : values()) {
+                if (window.name.equalsIgnoreCase(name)) {
+                    return window;
+                }
+            }
+            throw new FilmorateBadRequestException("Параметр 'window' должен быть 1h, 24h или 7d");
+        }
+    }
+
+    private static final int RING_SIZE = Window.WEEK.minutes;
+
+    @Autowired
+    private LikeStorage likeStorage;
+
+    private final Map<Window, LikesRanking> rankings = new EnumMap<>(Window.class);
+
+    // Корзина минуты m лежит в ячейке m % RING_SIZE; bucketMinutes хранит минуту, к которой относится ячейка
+    private final Map<Long, Integer>[] buckets;
+    private final long[] bucketMinutes = new long[RING_SIZE];
+    private volatile long currentMinute;
+
+    @SuppressWarnings("unchecked")
+    public TrendingFilms() {
+        buckets = new Map[RING_SIZE];
+        for (Window window : Window.values()) {
+            rankings.put(window, new LikesRanking());
+        }
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        Instant now = Instant.now();
+        AtomicLong likesCount = new AtomicLong();
+
+        synchronized (this) {
+            clear(toMinute(now));
+            likeStorage.forEachLikeSince(now.minusSeconds(TimeUnit.MINUTES.toSeconds(RING_SIZE)), (filmId, likedAt) -> {
+                addLikes(filmId, likedAt, 1);
+                likesCount.incrementAndGet();
+            });
+        }
+
+        log.info("Окна популярности фильмов построены. Лайков за неделю: {}", likesCount);
+    }
+
+    public List<Long> getTopFilmIds(Window window, int count) {
+        advanceIfStale();
+        return rankings.get(window).getTopFilmIds(count);
+    }
+
+    public int getLikesCount(Window window, Long filmId) {
+        advanceIfStale();
+        return rankings.get(window).getLikesCount(filmId);
+    }
+
+    /**
+     * Учитывает изменение количества лайков фильма в минуте likedAt. Лайки старше недели не учитываются,
+     * лайки "из будущего" (расхождение часов) относятся к текущей минуте.
+     */
+    public synchronized void addLikes(Long filmId, Instant likedAt, int delta) {
+        advance(toMinute(Instant.now()));
+
+        long minute = Math.min(toMinute(likedAt), currentMinute);
+        long age = currentMinute - minute;
+        if (age >= RING_SIZE) {
+            return;
+        }
+
+        int slot = slot(minute);
+        if (buckets[slot] == null) {
+            buckets[slot] = new HashMap<>();
+        }
+        // Корзина не уходит в минус: удаление лайка, которого в ней нет, не учитывается
+        int oldCount = buckets[slot].getOrDefault(filmId, 0);
+        int newCount = Math.max(oldCount + delta, 0);
+        if (newCount == oldCount) {
+            return;
+        }
+        if (newCount == 0) {
+            buckets[slot].remove(filmId);
+        } else {
+            buckets[slot].put(filmId, newCount);
+        }
+
+        for (Window window : Window.values()) {
+            if (age < window.minutes) {
+                addLikes(rankings.get(window), filmId, newCount - oldCount);
+            }
+        }
+    }
+
+    @EventListener
+    public void onDatasetLoaded(DatasetLoadedEvent event) {
+        rebuild();
+    }
+
+    @EventListener
+    public void onLikeAdded(LikeAddedEvent event) {
+        addLikes(event.getFilmId(), event.getLikedAt(), 1);
+    }
+
+    @EventListener
+    public void onLikeDeleted(LikeDeletedEvent event) {
+        addLikes(event.getFilmId(), event.getLikedAt(), -1);
+    }
+
+    private void advanceIfStale() {
+        long minute = toMinute(Instant.now());
+        if (minute > currentMinute) {
+            advance(minute);
+        }
+    }
+
+    /**
+     * Сдвигает окна до минуты toMinute: для каждой новой минуты из каждого окна вычитается корзина,
+     * которая из него вышла, а ячейка, освобожденная недельным окном, отдается новой минуте.
+     */
+    private synchronized void advance(long toMinute) {
+        if (toMinute <= currentMinute) {
+            return;
+        }
+        if (toMinute - currentMinute >= RING_SIZE) {
+            clear(toMinute);
+            return;
+        }
+
+        for (long minute = currentMinute + 1; minute <= toMinute; minute++) {
+            for (Window window : Window.values()) {
+                long expiredMinute = minute - window.minutes;
+                int slot = slot(expiredMinute);
+                if ((buckets[slot] != null) && (bucketMinutes[slot] == expiredMinute)) {
+                    LikesRanking ranking = rankings.get(window);
+                    buckets[slot].forEach((filmId, count) -> addLikes(ranking, filmId, -count));
+                }
+            }
+
+            int slot = slot(minute);
+            buckets[slot] = null;
+            bucketMinutes[slot] = minute;
+        }
+        currentMinute = toMinute;
+    }
+
+    // Фильмы без лайков в окне убираются из рейтинга окна
+    private void addLikes(LikesRanking ranking, Long filmId, int delta) {
+        ranking.addLikes(filmId, delta);
+        if (ranking.getLikesCount(filmId) == 0) {
+            ranking.remove(filmId);
+        }
+    }
+
+    private void clear(long minute) {
+        for (int slot = 0; slot < RING_SIZE; slot++) {
+            buckets[slot] = null;
+            bucketMinutes[slot] = minute - Math.floorMod(minute - slot, (long) RING_SIZE);
+        }
+        rankings.values().forEach(LikesRanking::clear);
+        currentMinute = minute;
+    }
+
+    private static long toMinute(Instant instant) {
+        return TimeUnit.MILLISECONDS.toMinutes(instant.toEpochMilli());
+    }
+
+    private static int slot(long minute) {
+        return (int) Math.floorMod(minute, (long) RING_SIZE);
+    }
+}
@@ -1,44 +1,83 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
+import ru.yandex.practicum.filmorate.model.Fields;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.friends.FriendIndex;
 import ru.yandex.practicum.filmorate.storage.friends.FriendsStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikeStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.List;
+import java.util.function.Consumer;
+
+import static ru.yandex.practicum.filmorate.service.PageParams.checkLimit;
+import static ru.yandex.practicum.filmorate.service.PageParams.checkPageParams;
 
 @Service
 public class UserService {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int DEFAULT_SUGGESTIONS_COUNT = 10;
+
     @Autowired
-    @Qualifier("userDbStorage")
     private UserStorage userStorage;
 
     @Autowired
-    @Qualifier("friendsDbStorage")
     private FriendsStorage friendsStorage;
 
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private LikeStorage likeStorage;
+
+    @Autowired
+    private FriendIndex friendIndex;
+
     public UserService() {}
 
-    public List<User> getUsersList() {
-        return userStorage.getUsersList();
+    public List<User> getUsersList(Fields fields) {
+        return userStorage.getUsersList(fields);
+    }
+
+    public List<User> getUsersPage(Long after, Integer limit, Fields fields) {
+        Long afterId = (after != null) ? after : 0L;
+        Integer pageSize = (limit != null) ? limit : DEFAULT_PAGE_SIZE;
+
+        checkPageParams(afterId, pageSize);
+
+        return userStorage.getUsersPage(afterId, pageSize, fields);
+    }
+
+    public void forEachUser(Fields fields, Consumer<User> action) {
+        userStorage.forEachUser(fields, action);
     }
 
     public User createUser(User user) {
         return userStorage.createUser(user);
     }
 
+    public List<User> createUsers(List<User> users) {
+        return userStorage.createUsers(users);
+    }
+
     public User updateUser(User user) {
         return userStorage.updateUser(user);
     }
 
     public User getUser(Long userId) {
+        return getUser(userId, Fields.all());
+    }
+
+    public User getUser(Long userId, Fields fields) {
         checkUserId(userId);
 
-        User user = userStorage.getUser(userId);
+        User user = userStorage.getUser(userId, fields);
         if (user == null) {
             throw new FilmorateNotFoundException("Пользователь с id = " + userId + " не найден");
         }
@@ -59,17 +98,41 @@ public class UserService {
         friendsStorage.deleteFriend(userId, friendId);
     }
 
-    public List<User> getFriendsList(Long userId) {
+    public List<User> getFriendsList(Long userId, Fields fields) {
         checkUserId(userId);
 
-        return userStorage.getFriendsList(userId);
+        return userStorage.getFriendsList(userId, fields);
     }
 
-    public List<User> getCommonFriendsList(Long userId, Long otherId) {
+    public List<User> getCommonFriendsList(Long userId, Long otherId, Fields fields) {
         checkUserId(userId);
         checkUserId(otherId);
 
-        return userStorage.getCommonFriendsList(userId, otherId);
+        return userStorage.getCommonFriendsList(userId, otherId, fields);
+    }
+
+    public List<User> getFriendSuggestions(Long userId, Integer limit, Fields fields) {
+        Integer suggestionsCount = (limit != null) ? limit : DEFAULT_SUGGESTIONS_COUNT;
+
+        checkLimit(suggestionsCount);
+
+        getUser(userId, User.SUMMARY_FIELDS);
+
+        return userStorage.getUsersByIds(friendIndex.getSuggestedFriendIds(userId, suggestionsCount), fields);
+    }
+
+    /**
+     * Страница фильмов, лайкнутых пользователем, в порядке возрастания ID.
+     */
+    public List<Film> getLikedFilms(Long userId, Long after, Integer limit, Fields fields) {
+        Long afterId = (after != null) ? after : 0L;
+        Integer pageSize = (limit != null) ? limit : DEFAULT_PAGE_SIZE;
+
+        checkPageParams(afterId, pageSize);
+
+        getUser(userId, User.SUMMARY_FIELDS);
+
+        return filmStorage.getFilmsByIds(likeStorage.getLikedFilmIds(userId, afterId, pageSize), fields);
     }
 
     private void checkUserId(Long userId) {
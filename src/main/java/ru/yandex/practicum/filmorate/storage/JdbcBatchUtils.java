@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class JdbcBatchUtils {
+
+    public static final int BATCH_SIZE = 1000;
+
+    private JdbcBatchUtils() {
+    }
+
+    /**
+     * Пакетная вставка строк с чтением сгенерированных ключей. Строки отправляются пачками
+     * по {@link #BATCH_SIZE}, ключи возвращаются в порядке строк.
+     */
+    public static List<Long> batchInsert(JdbcTemplate jdbcTemplate, String query, String keyColumn, List<Object[]> rows) {
+        List<Long> keys = new ArrayList<>(rows.size());
+        if (rows.isEmpty()) {
+            return keys;
+        }
+
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(query, new String[] {keyColumn})) {
+                for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+                    for (Object[] row : rows.subList(from, Math.min(from + BATCH_SIZE, rows.size()))) {
+                        for (int i = 0; i < row.length; i++) {
+                            StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, row[i]);
+                        }
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        while (rs.next()) {
+                            keys.add(rs.getLong(1));
+                        }
+                    }
+                }
+            }
+            return keys;
+        });
+    }
+}
@@ -0,0 +1,491 @@
+package ru.yandex.practicum.filmorate.storage.eventlog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.FilmorateSqlException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.genre.Genre;
+import ru.yandex.practicum.filmorate.model.mpa.MPA;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static ru.yandex.practicum.filmorate.storage.eventlog.EventLogFormat.*;
+
+/**
+ * Журнал изменений хранилищ в памяти (профиль eventlog): сегменты в формате {@link EventLogFormat},
+ * отображенные в память.
+ * <p>
+ * Записи дописываются в конец текущего сегмента под монитором журнала, без системных вызовов на каждую запись:
+ * на диск отображение сбрасывается раз в filmorate.eventlog.sync-interval-ms, при смене сегмента и при остановке.
+ * Поэтому при падении процесса записи не теряются, а при сбое питания теряется не больше интервала сброса.
+ * После перезапуска журнал всегда продолжается в новом сегменте, и недописанная запись в конце прежнего
+ * сегмента (неверная контрольная сумма) только завершает его повтор.
+ * <p>
+ * Изменения хранилищ выполняются через {@link #write}: под общей блокировкой на чтение, которую
+ * {@link #checkpointPosition()} берет на запись. Так к моменту чтения позиции контрольной точки все записи
+ * до нее уже применены к хранилищам, и снимок, записанный после этого, содержит их все.
+ */
+@Slf4j
+@Component
+@Profile("eventlog")
+public class EventLog {
+
+    private static final int LOCK_STRIPES = 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+
+    private final ReadWriteLock mutations = new ReentrantReadWriteLock();
+    private final Object[] stripes = new Object[LOCK_STRIPES];
+
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer record = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+
+    private MappedByteBuffer segment;
+    private long segmentBase;
+    private int offset;
+    private boolean closed;
+
+    public EventLog(@Value("${filmorate.eventlog.directory:./db/eventlog}") String directory,
+                    @Value("${filmorate.eventlog.segment-size:67108864}") int segmentSize) throws IOException {
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+
+        Files.createDirectories(this.directory);
+        try (Stream<Path> files = Files.list(this.directory)) {
+            for (Path path : files.collect(Collectors.toList())) {
+                String name = path.getFileName().toString();
+                if (name.matches("\\d{20}" + SEGMENT_SUFFIX)) {
+                    segments.put(Long.parseLong(name.substring(0, 20)), path);
+                }
+            }
+        }
+
+        long nextBase = 0L;
+        if (!segments.isEmpty()) {
+            Map.Entry<Long, Path> last = segments.lastEntry();
+            nextBase = last.getKey() + Files.size(last.getValue());
+        }
+        openSegment(nextBase);
+        log.info("Журнал изменений {}: сегментов: {}, запись с позиции {}", this.directory, segments.size(), nextBase);
+    }
+
+    /**
+     * Изменение хранилища вместе с записью в журнал. Не выполняется одновременно с чтением позиции
+     * контрольной точки.
+     */
+    public <T> T write(Supplier<T> mutation) {
+        Lock lock = mutations.readLock();
+        lock.lock();
+        try {
+            return mutation.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * То же, что {@link #write(Supplier)}, но изменения одной пары (фильм и пользователь, пользователь и друг)
+     * выполняются по очереди, и записи о них ложатся в журнал в том же порядке, в каком применены.
+     */
+    public <T> T write(long first, long second, Supplier<T> mutation) {
+        Object stripe = stripes[Long.hashCode(first * 0x9E3779B97F4A7C15L + second) & (LOCK_STRIPES - 1)];
+        return write(() -> {
+            synchronized (stripe) {
+                return mutation.get();
+            }
+        });
+    }
+
+    /**
+     * Позиция, с которой начнется следующая запись.
+     */
+    public synchronized long getPosition() {
+        return segmentBase + offset;
+    }
+
+    /**
+     * Позиция для контрольной точки: все записи до нее уже применены к хранилищам.
+     */
+    public long checkpointPosition() {
+        Lock lock = mutations.writeLock();
+        lock.lock();
+        try {
+            return getPosition();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public synchronized void appendFilmSaved(Film film) {
+        byte[] name = toBytes(film.getName());
+        byte[] description = toBytes(film.getDescription());
+        List<Integer> genreIds = (film.getGenres() == null) ? List.of() : film.getGenres().stream()
+                .map(Genre::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+
+        begin(FILM_SAVED, Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES
+                + Integer.BYTES * (genreIds.size() + 1) + stringSize(name) + stringSize(description));
+        record.putLong(film.getId());
+        record.putInt(((film.getMpa() != null) && (film.getMpa().getId() != null)) ? film.getMpa().getId() : 0);
+        record.putLong(toEpochDay(film.getReleaseDate()));
+        record.putInt((film.getDuration() != null) ? film.getDuration() : NULL_INT);
+        record.putInt(genreIds.size());
+        genreIds.forEach(record::putInt);
+        putString(name);
+        putString(description);
+        commit();
+    }
+
+    public synchronized void appendUserSaved(User user) {
+        byte[] email = toBytes(user.getEmail());
+        byte[] login = toBytes(user.getLogin());
+        byte[] name = toBytes(user.getName());
+
+        begin(USER_SAVED, Long.BYTES + Long.BYTES + stringSize(email) + stringSize(login) + stringSize(name));
+        record.putLong(user.getId());
+        record.putLong(toEpochDay(user.getBirthday()));
+        putString(email);
+        putString(login);
+        putString(name);
+        commit();
+    }
+
+    public synchronized void appendLikeAdded(long filmId, long userId, long likedAtMillis) {
+        begin(LIKE_ADDED, Long.BYTES * 3);
+        record.putLong(filmId).putLong(userId).putLong(likedAtMillis);
+        commit();
+    }
+
+    public synchronized void appendLikeDeleted(long filmId, long userId) {
+        begin(LIKE_DELETED, Long.BYTES * 2);
+        record.putLong(filmId).putLong(userId);
+        commit();
+    }
+
+    public synchronized void appendFriendAdded(long userId, long friendId) {
+        begin(FRIEND_ADDED, Long.BYTES * 2);
+        record.putLong(userId).putLong(friendId);
+        commit();
+    }
+
+    public synchronized void appendFriendDeleted(long userId, long friendId) {
+        begin(FRIEND_DELETED, Long.BYTES * 2);
+        record.putLong(userId).putLong(friendId);
+        commit();
+    }
+
+    /**
+     * Повтор записей журнала, начиная с позиции fromPosition. Возвращает количество повторенных записей.
+     * У фильмов рейтинг и жанры заполнены только ID.
+     */
+    public synchronized long replay(long fromPosition, EventLogVisitor visitor) {
+        long replayed = 0;
+        for (Map.Entry<Long, Path> entry : segments.entrySet()) {
+            long base = entry.getKey();
+            Long nextBase = segments.higherKey(base);
+            if ((nextBase != null) && (nextBase <= fromPosition)) {
+                continue;
+            }
+
+            try {
+                replayed += replaySegment(base, mapForReplay(base, entry.getValue()), fromPosition, visitor);
+            } catch (IOException e) {
+                log.info("Сегмент журнала {} не прочитан. Причина: {}", entry.getValue(), e.getMessage());
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Удаление сегментов, все записи которых лежат до позиции контрольной точки. Возвращает количество
+     * удаленных сегментов.
+     */
+    public synchronized int compact(long checkpointPosition) {
+        int deleted = 0;
+        Iterator<Map.Entry<Long, Path>> iterator = segments.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Path> entry = iterator.next();
+            Long nextBase = segments.higherKey(entry.getKey());
+            if ((entry.getKey() == segmentBase) || (nextBase == null) || (nextBase > checkpointPosition)) {
+                break;
+            }
+
+            try {
+                Files.deleteIfExists(entry.getValue());
+            } catch (IOException e) {
+                log.info("Сегмент журнала {} не удален. Причина: {}", entry.getValue(), e.getMessage());
+                break;
+            }
+            iterator.remove();
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * Сброс текущего сегмента на диск. Выполняется вне монитора журнала, чтобы не задерживать запись.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.eventlog.sync-interval-ms:1000}")
+    public void sync() {
+        MappedByteBuffer current;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            current = segment;
+        }
+        current.force();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (!closed) {
+            segment.force();
+            closed = true;
+            log.info("Журнал изменений закрыт на позиции {}", segmentBase + offset);
+        }
+    }
+
+    private void openSegment(long base) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segment.putInt(0, MAGIC);
+        segment.putInt(Integer.BYTES, VERSION);
+
+        segments.put(base, path);
+        segmentBase = base;
+        offset = SEGMENT_HEADER_SIZE;
+    }
+
+    private ByteBuffer mapForReplay(long base, Path path) throws IOException {
+        if (base == segmentBase) {
+            return segment.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private long replaySegment(long base, ByteBuffer in, long fromPosition, EventLogVisitor visitor) {
+        if ((in.limit() < SEGMENT_HEADER_SIZE) || (in.getInt(0) != MAGIC) || (in.getInt(Integer.BYTES) != VERSION)) {
+            log.info("Сегмент журнала с позиции {} пропущен: неизвестный формат", base);
+            return 0;
+        }
+
+        long replayed = 0;
+        int position = SEGMENT_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= in.limit()) {
+            int length = in.getInt(position);
+            if (length == 0) {
+                break;
+            }
+
+            ByteBuffer body = null;
+            if ((length > 0) && (length <= in.limit() - position - RECORD_HEADER_SIZE)) {
+                body = in.duplicate()
+                        .position(position + RECORD_HEADER_SIZE)
+                        .limit(position + RECORD_HEADER_SIZE + length)
+                        .slice()
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                crc.reset();
+                crc.update(body.duplicate());
+            }
+            if ((body == null) || ((int) crc.getValue() != in.getInt(position + Integer.BYTES))) {
+                log.info("Запись журнала на позиции {} повреждена или записана не полностью, повтор сегмента остановлен",
+                        base + position);
+                break;
+            }
+
+            if (base + position >= fromPosition) {
+                try {
+                    dispatch(body, visitor);
+                } catch (BufferUnderflowException e) {
+                    log.info("Запись журнала на позиции {} не разобрана, повтор сегмента остановлен", base + position);
+                    break;
+                }
+                replayed++;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return replayed;
+    }
+
+    private void dispatch(ByteBuffer in, EventLogVisitor visitor) {
+        byte type = in.get();
+        switch (type) {
+            case FILM_SAVED:
+                visitor.onFilmSaved(readFilm(in));
+                break;
+            case USER_SAVED:
+                visitor.onUserSaved(readUser(in));
+                break;
+            case LIKE_ADDED:
+                visitor.onLikeAdded(in.getLong(), in.getLong(), in.getLong());
+                break;
+            case LIKE_DELETED:
+                visitor.onLikeDeleted(in.getLong(), in.getLong());
+                break;
+            case FRIEND_ADDED:
+                visitor.onFriendAdded(in.getLong(), in.getLong());
+                break;
+            case FRIEND_DELETED:
+                visitor.onFriendDeleted(in.getLong(), in.getLong());
+                break;
+            default:
+                log.info("Неизвестный тип записи журнала: {}", type);
+        }
+    }
+
+    private static Film readFilm(ByteBuffer in) {
+        long id = in.getLong();
+        int mpaId = in.getInt();
+        long releaseDate = in.getLong();
+        int duration = in.getInt();
+        int genresCount = in.getInt();
+        List<Genre> genres = new ArrayList<>(genresCount);
+        for (int i = 0; i < genresCount; i++) {
+            genres.add(Genre.builder().id(in.getInt()).build());
+        }
+
+        return Film.builder()
+                .id(id)
+                .name(getString(in))
+                .description(getString(in))
+                .genres(genres)
+                .mpa((mpaId > 0) ? MPA.builder().id(mpaId).build() : null)
+                .releaseDate(toDate(releaseDate))
+                .duration((duration != NULL_INT) ? duration : null)
+                .likesCount(0)
+                .likesList(new HashSet<>())
+                .build();
+    }
+
+    private static User readUser(ByteBuffer in) {
+        long id = in.getLong();
+        long birthday = in.getLong();
+
+        return User.builder()
+                .id(id)
+                .birthday(toDate(birthday))
+                .email(getString(in))
+                .login(getString(in))
+                .name(getString(in))
+                .friends(new HashSet<>())
+                .build();
+    }
+
+    private void begin(byte type, int payloadSize) {
+        if (record.capacity() < payloadSize + 1) {
+            record = ByteBuffer.allocate(Integer.highestOneBit(payloadSize + 1) * 2).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        record.clear();
+        record.put(type);
+    }
+
+    /**
+     * Запись подготовленной в буфере записи в сегмент. Длина пишется последней, поэтому до ее записи
+     * запись при повторе не видна.
+     */
+    private void commit() {
+        if (closed) {
+            throw new FilmorateSqlException("Журнал изменений закрыт");
+        }
+
+        int length = record.position();
+        if (offset + RECORD_HEADER_SIZE + length > segmentSize) {
+            nextSegment(length);
+        }
+
+        crc.reset();
+        crc.update(record.array(), 0, length);
+        segment.position(offset + RECORD_HEADER_SIZE);
+        segment.put(record.array(), 0, length);
+        segment.putInt(offset + Integer.BYTES, (int) crc.getValue());
+        segment.putInt(offset, length);
+        offset += RECORD_HEADER_SIZE + length;
+    }
+
+    private void nextSegment(int length) {
+        if (SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + length > segmentSize) {
+            log.info("Запись журнала длиной {} байт не помещается в сегмент размером {} байт", length, segmentSize);
+            throw new FilmorateSqlException("Ошибка записи в журнал изменений");
+        }
+
+        segment.force();
+        long base = segmentBase + segmentSize;
+        try {
+            openSegment(base);
+        } catch (IOException e) {
+            log.info("Ошибка создания сегмента журнала с позиции {}. Причина: {}", base, e.getMessage());
+            throw new FilmorateSqlException("Ошибка записи в журнал изменений");
+        }
+    }
+
+    private void putString(byte[] bytes) {
+        record.putInt((bytes != null) ? bytes.length : -1);
+        if (bytes != null) {
+            record.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] toBytes(String value) {
+        return (value != null) ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return Integer.BYTES + ((bytes != null) ? bytes.length : 0);
+    }
+
+    private static long toEpochDay(LocalDate date) {
+        return (date != null) ? date.toEpochDay() : NULL_LONG;
+    }
+
+    private static LocalDate toDate(long epochDay) {
+        return (epochDay != NULL_LONG) ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.storage.eventlog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.snapshot.SnapshotSaver;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+
+/**
+ * Контрольные точки журнала изменений (профиль eventlog).
+ * <p>
+ * Контрольная точка - снимок хранилищ ({@link SnapshotSaver}) с позицией журнала, прочитанной до начала
+ * обхода хранилищ. Снимок пишется без остановки записи, поэтому в нем могут оказаться и изменения после этой
+ * позиции; при старте они применяются повторно и ничего не меняют. После записи снимка сегменты журнала,
+ * целиком лежащие до позиции, удаляются. Если снимок отключен (filmorate.snapshot.enabled=false),
+ * журнал не сокращается и при старте повторяется целиком.
+ */
+@Slf4j
+@Component
+@Profile("eventlog")
+public class EventLogCheckpointer {
+
+    @Autowired
+    private EventLog eventLog;
+
+    @Autowired
+    private SnapshotSaver snapshotSaver;
+
+    @Value("${filmorate.snapshot.enabled:false}")
+    private boolean enabled;
+
+    @Value("${filmorate.snapshot.path:./db/filmorate.snapshot}")
+    private String path;
+
+    @Scheduled(initialDelayString = "${filmorate.eventlog.checkpoint-interval-ms:300000}",
+            fixedDelayString = "${filmorate.eventlog.checkpoint-interval-ms:300000}")
+    public void scheduledCheckpoint() {
+        checkpoint();
+    }
+
+    @PreDestroy
+    public void checkpointOnShutdown() {
+        checkpoint();
+    }
+
+    public synchronized boolean checkpoint() {
+        if (!enabled) {
+            return false;
+        }
+
+        long position = eventLog.checkpointPosition();
+        if (!snapshotSaver.save(Paths.get(path), position)) {
+            return false;
+        }
+
+        int deleted = eventLog.compact(position);
+        log.info("Контрольная точка журнала изменений на позиции {}, удалено сегментов: {}", position, deleted);
+        return true;
+    }
+}
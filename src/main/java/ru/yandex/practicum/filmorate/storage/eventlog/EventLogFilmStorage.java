@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage.eventlog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikeTimes;
+import ru.yandex.practicum.filmorate.storage.like.LikedFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.snapshot.SnapshotLoader;
+
+/**
+ * Хранилище фильмов в памяти с журналом изменений (профиль eventlog).
+ * <p>
+ * Данные и индексы - те же, что у {@link InMemoryFilmStorage}, каждое изменение дописывается в {@link EventLog}.
+ * Новый фильм попадает в журнал раньше, чем становится виден, поэтому запись о нем всегда предшествует записям
+ * о его лайках. Обновления выполняются по очереди и пишутся в журнал после всех проверок.
+ * При старте к контрольной точке применяется хвост журнала после ее позиции.
+ */
+@Component("eventLogFilmStorage")
+@Profile("eventlog")
+@Slf4j
+public class EventLogFilmStorage extends InMemoryFilmStorage {
+
+    @Autowired
+    private EventLog eventLog;
+
+    @Autowired
+    private SnapshotLoader snapshotLoader;
+
+    @Autowired
+    private LikeTimes likeTimes;
+
+    @Autowired
+    private LikedFilmsIndex likedFilmsIndex;
+
+    @Override
+    public void restoreSnapshot() {
+        super.restoreSnapshot();
+
+        long fromPosition = snapshotLoader.getLogPosition();
+        long replayed = eventLog.replay(fromPosition, new EventLogVisitor() {
+            @Override
+            public void onFilmSaved(Film film) {
+                resolveReferences(film);
+                restoreFilm(film);
+            }
+
+            @Override
+            public void onLikeAdded(long filmId, long userId, long likedAtMillis) {
+                Film film = getFilm(filmId);
+                if (film != null) {
+                    film.getLikesList().add(userId);
+                    likeTimes.put(filmId, userId, likedAtMillis);
+                    likedFilmsIndex.add(userId, filmId);
+                }
+            }
+
+            @Override
+            public void onLikeDeleted(long filmId, long userId) {
+                Film film = getFilm(filmId);
+                if (film != null) {
+                    film.getLikesList().remove(userId);
+                    likeTimes.remove(filmId, userId);
+                    likedFilmsIndex.remove(userId, filmId);
+                }
+            }
+        });
+
+        forEachFilm(film -> film.setLikesCount(film.getLikesList().size()));
+        log.info("Из журнала изменений применено записей: {} с позиции {}", replayed, fromPosition);
+    }
+
+    @Override
+    public synchronized Film updateFilm(Film film) {
+        return eventLog.write(() -> {
+            Film updated = super.updateFilm(film);
+            eventLog.appendFilmSaved(updated);
+            return updated;
+        });
+    }
+
+    @Override
+    protected void storeFilm(Film film) {
+        eventLog.write(() -> {
+            eventLog.appendFilmSaved(film);
+            super.storeFilm(film);
+            return null;
+        });
+    }
+}
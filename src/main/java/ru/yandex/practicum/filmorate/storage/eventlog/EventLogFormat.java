@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage.eventlog;
+
+/**
+ * Формат сегментов журнала изменений (профиль eventlog).
+ * <p>
+ * Журнал - последовательность файлов-сегментов фиксированного размера в одном каталоге. Имя сегмента -
+ * его начальная позиция в журнале (20 цифр) и расширение {@value #SEGMENT_SUFFIX}, так что позиция записи -
+ * начальная позиция сегмента плюс смещение записи в нем, и позиции растут от сегмента к сегменту.
+ * Все числа - little-endian.
+ * <pre>
+ * заголовок сегмента: int MAGIC, int VERSION
+ * запись:             int длина (тип и данные), int CRC32 типа и данных, byte тип, данные
+ * </pre>
+ * Запись с длиной 0 (незаписанная часть файла) или с неверной контрольной суммой завершает сегмент.
+ * Данные записей по типам:
+ * <pre>
+ * FILM_SAVED:     long ID, int ID рейтинга MPA (0 - нет), long дата выпуска (день эпохи), int продолжительность,
+ *                 int k, int[k] ID жанров, строка названия, строка описания
+ * USER_SAVED:     long ID, long дата рождения (день эпохи), строки email, логина, имени
+ * LIKE_ADDED:     long ID фильма, long ID пользователя, long время лайка (мс)
+ * LIKE_DELETED:   long ID фильма, long ID пользователя
+ * FRIEND_ADDED:   long ID пользователя, long ID друга
+ * FRIEND_DELETED: long ID пользователя, long ID друга
+ * </pre>
+ * Строка - int длина в байтах UTF-8 (-1 для null), затем байты. Отсутствующие числа кодируются как
+ * {@link #NULL_INT} и {@link #NULL_LONG}. Каждая запись задает итоговое состояние (фильм целиком, наличие лайка),
+ * поэтому повтор записи, уже учтенной в контрольной точке, ничего не меняет.
+ */
+final class EventLogFormat {
+
+    static final int MAGIC = 0x464D454C;
+    static final int VERSION = 1;
+
+    static final int SEGMENT_HEADER_SIZE = Integer.BYTES * 2;
+    static final int RECORD_HEADER_SIZE = Integer.BYTES * 2;
+    static final String SEGMENT_SUFFIX = ".log";
+
+    static final byte FILM_SAVED = 1;
+    static final byte USER_SAVED = 2;
+    static final byte LIKE_ADDED = 3;
+    static final byte LIKE_DELETED = 4;
+    static final byte FRIEND_ADDED = 5;
+    static final byte FRIEND_DELETED = 6;
+
+    static final int NULL_INT = Integer.MIN_VALUE;
+    static final long NULL_LONG = Long.MIN_VALUE;
+
+    private EventLogFormat() {
+    }
+}
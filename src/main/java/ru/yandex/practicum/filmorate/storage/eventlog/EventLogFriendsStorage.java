@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.storage.eventlog;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.friends.InMemoryFriendsStorage;
+
+/**
+ * Хранилище друзей в памяти с журналом изменений (профиль eventlog). Каждая заявка в друзья и ее удаление
+ * пишутся в журнал под блокировкой пары (пользователь, друг), см. {@link EventLogLikeStorage}.
+ */
+@Component("eventLogFriendsStorage")
+@Profile("eventlog")
+public class EventLogFriendsStorage extends InMemoryFriendsStorage {
+
+    @Autowired
+    private EventLog eventLog;
+
+    @Override
+    protected boolean storeFriend(User user, Long friendId) {
+        return eventLog.write(user.getId(), friendId, () -> {
+            if (user.getFriends().contains(friendId)) {
+                return false;
+            }
+            eventLog.appendFriendAdded(user.getId(), friendId);
+            return super.storeFriend(user, friendId);
+        });
+    }
+
+    @Override
+    protected boolean removeFriend(User user, Long friendId) {
+        return eventLog.write(user.getId(), friendId, () -> {
+            if (!user.getFriends().contains(friendId)) {
+                return false;
+            }
+            eventLog.appendFriendDeleted(user.getId(), friendId);
+            return super.removeFriend(user, friendId);
+        });
+    }
+}
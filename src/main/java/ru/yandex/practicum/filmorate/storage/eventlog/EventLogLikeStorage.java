@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.storage.eventlog;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.like.InMemoryLikeStorage;
+
+import java.time.Instant;
+
+/**
+ * Хранилище лайков в памяти с журналом изменений (профиль eventlog).
+ * <p>
+ * Лайк и его отмена пишутся в журнал под блокировкой пары (фильм, пользователь), поэтому порядок записей
+ * одной пары в журнале совпадает с порядком изменений. Лайки и их время при повторе журнала восстанавливает
+ * {@link EventLogFilmStorage}.
+ */
+@Component("eventLogLikeStorage")
+@Profile("eventlog")
+public class EventLogLikeStorage extends InMemoryLikeStorage {
+
+    @Autowired
+    private EventLog eventLog;
+
+    @Override
+    protected boolean storeLike(Film film, Long userId, Instant likedAt) {
+        return eventLog.write(film.getId(), userId, () -> {
+            if (film.getLikesList().contains(userId)) {
+                return false;
+            }
+            eventLog.appendLikeAdded(film.getId(), userId, likedAt.toEpochMilli());
+            return super.storeLike(film, userId, likedAt);
+        });
+    }
+
+    @Override
+    protected Instant removeLike(Film film, Long userId) {
+        return eventLog.write(film.getId(), userId, () -> {
+            if (!film.getLikesList().contains(userId)) {
+                return null;
+            }
+            eventLog.appendLikeDeleted(film.getId(), userId);
+            return super.removeLike(film, userId);
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage.eventlog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.snapshot.SnapshotLoader;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+/**
+ * Хранилище пользователей в памяти с журналом изменений (профиль eventlog).
+ * <p>
+ * Устроено так же, как {@link EventLogFilmStorage}: новый пользователь пишется в журнал до того, как станет
+ * виден (и раньше записей о его друзьях), обновления - по очереди после всех проверок. Заявки в друзья
+ * пишет {@link EventLogFriendsStorage}, а применяются они при повторе журнала здесь, к спискам друзей.
+ */
+@Component("eventLogUserStorage")
+@Profile("eventlog")
+@Slf4j
+public class EventLogUserStorage extends InMemoryUserStorage {
+
+    @Autowired
+    private EventLog eventLog;
+
+    @Autowired
+    private SnapshotLoader snapshotLoader;
+
+    @Override
+    public void restoreSnapshot() {
+        super.restoreSnapshot();
+
+        long fromPosition = snapshotLoader.getLogPosition();
+        long replayed = eventLog.replay(fromPosition, new EventLogVisitor() {
+            @Override
+            public void onUserSaved(User user) {
+                restoreUser(user);
+            }
+
+            @Override
+            public void onFriendAdded(long userId, long friendId) {
+                User user = getUser(userId);
+                if (user != null) {
+                    user.getFriends().add(friendId);
+                }
+            }
+
+            @Override
+            public void onFriendDeleted(long userId, long friendId) {
+                User user = getUser(userId);
+                if (user != null) {
+                    user.getFriends().remove(friendId);
+                }
+            }
+        });
+
+        log.info("Из журнала изменений применено записей: {} с позиции {}", replayed, fromPosition);
+    }
+
+    @Override
+    public synchronized User updateUser(User user) {
+        return eventLog.write(() -> {
+            User updated = super.updateUser(user);
+            eventLog.appendUserSaved(updated);
+            return updated;
+        });
+    }
+
+    @Override
+    protected void storeUser(User user) {
+        eventLog.write(() -> {
+            eventLog.appendUserSaved(user);
+            super.storeUser(user);
+            return null;
+        });
+    }
+}
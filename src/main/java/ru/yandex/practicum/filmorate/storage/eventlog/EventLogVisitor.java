@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage.eventlog;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+/**
+ * Обработчик записей журнала при повторе. Каждое хранилище переопределяет только свои типы записей.
+ */
+public interface EventLogVisitor {
+
+    /**
+     * Фильм без лайков: новый или обновленный.
+     */
+    default void onFilmSaved(Film film) {
+    }
+
+    /**
+     * Пользователь без друзей: новый или обновленный.
+     */
+    default void onUserSaved(User user) {
+    }
+
+    default void onLikeAdded(long filmId, long userId, long likedAtMillis) {
+    }
+
+    default void onLikeDeleted(long filmId, long userId) {
+    }
+
+    default void onFriendAdded(long userId, long friendId) {
+    }
+
+    default void onFriendDeleted(long userId, long friendId) {
+    }
+}
@@ -3,17 +3,26 @@ package ru.yandex.practicum.filmorate.storage.film;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.event.FilmSavedEvent;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateSqlException;
+import ru.yandex.practicum.filmorate.model.Fields;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 import ru.yandex.practicum.filmorate.model.genre.Genre;
 import ru.yandex.practicum.filmorate.model.mpa.MPA;
+import ru.yandex.practicum.filmorate.storage.JdbcBatchUtils;
 import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikesCountBuffer;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
 
 import java.sql.ResultSet;
@@ -21,40 +30,69 @@ import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component("filmDbStorage")
 @Repository
+@Profile("!inmemory & !eventlog")
 public class FilmDbStorage implements FilmStorage {
 
     private final String CREATE_NEW_FILM_QUERY = "INSERT INTO FILM (Name, MPA_Rating, Description, ReleaseDate, Duration, LikesCount) "
                                                + "VALUES (?, ?, ?, ?, ?, ?);";
-    private final String GET_ALL_FILMS_QUERY = "SELECT * FROM FILM;";
+    private final String SELECT_FILMS_QUERY = "SELECT f.* FROM FILM AS f ";
+    private final String GET_ALL_FILMS_QUERY = SELECT_FILMS_QUERY + ";";
     private final String INSERT_FILM_GENRE_QUERY = "INSERT INTO FilmGenres (Film_ID, Genre_ID) "
             + "VALUES (?, ?) ON DUPLICATE KEY UPDATE Film_ID = Film_ID, Genre_ID = Genre_ID;";
-    private final String DELETE_ALL_FILM_GENRE_QUERY = "DELETE FROM FilmGenres WHERE Film_ID = ?;";
-    private final String SELECT_FILM_BY_ID_QUERY = "SELECT * FROM FILM WHERE Film_ID = ?;";
-    private final String GET_LAST_INSERTED_ID_QUERY = "SELECT Film_ID FROM FILM ORDER BY Film_ID DESC LIMIT 1;";
+    private final String DELETE_FILM_GENRE_QUERY = "DELETE FROM FilmGenres WHERE Film_ID = ? AND Genre_ID = ?;";
+    private final String SELECT_FILM_FOR_UPDATE_QUERY = "SELECT f.*, fg.Genre_ID FROM FILM AS f "
+                                                      + "LEFT JOIN FilmGenres AS fg ON fg.Film_ID = f.Film_ID "
+                                                      + "WHERE f.Film_ID = ? FOR UPDATE;";
+    private final String UPDATE_FILM_QUERY = "UPDATE FILM "
+                                           + "SET Name = ?, MPA_Rating = ?, Description = ?, ReleaseDate = ?, Duration = ? "
+                                           + "WHERE Film_ID = ?;";
+    private final String SELECT_FILM_BY_ID_QUERY = SELECT_FILMS_QUERY + "WHERE f.Film_ID = ?;";
+    private final String SELECT_FILMS_PAGE_QUERY = SELECT_FILMS_QUERY + "WHERE f.Film_ID > ? ORDER BY f.Film_ID LIMIT ?;";
+    private final String SELECT_FILMS_ORDERED_QUERY = SELECT_FILMS_QUERY + "ORDER BY f.Film_ID;";
+    private final String SELECT_FILMS_BY_IDS_QUERY = SELECT_FILMS_QUERY + "WHERE f.Film_ID = ANY(?);";
+    private final String SELECT_LIKES_COUNTS_QUERY = "SELECT Film_ID, LikesCount FROM FILM;";
+    private final String SELECT_GENRES_BY_FILM_IDS_QUERY = "SELECT Film_ID, Genre_ID FROM FilmGenres "
+                                                         + "WHERE Film_ID = ANY(?) "
+                                                         + "ORDER BY Film_ID, Genre_ID;";
+    private final String SELECT_LIKES_BY_FILM_IDS_QUERY = "SELECT Film_ID, User_ID FROM FilmLikes WHERE Film_ID = ANY(?);";
+
+    private static final int STREAM_FETCH_SIZE = 500;
 
     @Autowired
-    @Qualifier("genreDbStorage")
+    @Qualifier("genreCachedStorage")
     private GenreStorage genreStorage;
 
     @Autowired
-    @Qualifier("mpaDbStorage")
+    @Qualifier("mpaCachedStorage")
     private MpaStorage mpaStorage;
 
+    @Autowired
+    private LikesCountBuffer likesCountBuffer;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
 
     public FilmDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
+
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(STREAM_FETCH_SIZE);
     }
 
     @Override
-    public List<Film> getFilmsList()
+    public List<Film> getFilmsList(Fields fields)
     {
         try {
-            return jdbcTemplate.query(GET_ALL_FILMS_QUERY, this::getFilmDataFromQuery);
+            return hydrateFilms(jdbcTemplate.query(GET_ALL_FILMS_QUERY, this::getFilmDataFromQuery), fields);
         } catch (DataAccessException e) {
             log.info("Ошибка при чтении списка фильмов. Причина: {}", e.getCause().getMessage());
             throw new FilmorateSqlException("Ошибка при чтении списка фильмов");
@@ -62,52 +100,230 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
+    public List<Film> getFilmsPage(Long after, Integer limit, Fields fields)
+    {
+        try {
+            return hydrateFilms(jdbcTemplate.query(SELECT_FILMS_PAGE_QUERY, this::getFilmDataFromQuery, after, limit), fields);
+        } catch (DataAccessException e) {
+            log.info("Ошибка при чтении страницы списка фильмов. Причина: {}", e.getCause().getMessage());
+            throw new FilmorateSqlException("Ошибка при чтении списка фильмов");
+        }
+    }
+
+    /**
+     * Страница каталога по условиям фильтра. Запрос собирается из заданных условий: жанр - соединением
+     * с FilmGenres по индексу (Genre_ID, Film_ID), годы - диапазоном по ReleaseDate, страница - условием
+     * на ключ сортировки вместо OFFSET. Сортировка по популярности идет по сохраненному LikesCount,
+     * поэтому лайки, еще не сброшенные из {@link LikesCountBuffer}, на порядок не влияют.
+     */
+    @Override
+    public List<Film> getFilmsFiltered(FilmFilter filter, Integer limit, Fields fields)
+    {
+        StringBuilder query = new StringBuilder(SELECT_FILMS_QUERY);
+        List<Object> params = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+
+        if (filter.getGenreId() != null) {
+            query.append("JOIN FilmGenres AS fg ON fg.Film_ID = f.Film_ID AND fg.Genre_ID = ? ");
+            params.add(filter.getGenreId());
+        }
+        if (filter.getMpaId() != null) {
+            conditions.add("f.MPA_Rating = ?");
+            params.add(filter.getMpaId());
+        }
+        if (filter.getYearFrom() != null) {
+            conditions.add("f.ReleaseDate >= ?");
+            params.add(LocalDate.of(filter.getYearFrom(), 1, 1));
+        }
+        if (filter.getYearTo() != null) {
+            conditions.add("f.ReleaseDate < ?");
+            params.add(LocalDate.of(filter.getYearTo() + 1, 1, 1));
+        }
+
+        String orderBy;
+        if (filter.getSort() == FilmFilter.Sort.POPULAR) {
+            if (filter.getAfterId() != null) {
+                // Равносильно (LikesCount < x OR LikesCount = x AND Film_ID > id), но первое условие - диапазон по индексу
+                conditions.add("f.LikesCount <= ? AND (f.LikesCount < ? OR f.Film_ID > ?)");
+                params.add(filter.getAfterLikesCount());
+                params.add(filter.getAfterLikesCount());
+                params.add(filter.getAfterId());
+            }
+            orderBy = "ORDER BY f.LikesCount DESC, f.Film_ID ";
+        } else {
+            if (filter.getAfterId() != null) {
+                conditions.add("f.Film_ID > ?");
+                params.add(filter.getAfterId());
+            }
+            orderBy = "ORDER BY f.Film_ID ";
+        }
+
+        if (!conditions.isEmpty()) {
+            query.append("WHERE ").append(String.join(" AND ", conditions)).append(' ');
+        }
+        query.append(orderBy).append("LIMIT ?;");
+        params.add(limit);
+
+        try {
+            return hydrateFilms(jdbcTemplate.query(query.toString(), this::getFilmDataFromQuery, params.toArray()), fields);
+        } catch (DataAccessException e) {
+            log.info("Ошибка при чтении каталога фильмов. Причина: {}", e.getCause().getMessage());
+            throw new FilmorateSqlException("Ошибка при чтении списка фильмов");
+        }
+    }
+
+    /**
+     * Потоковое чтение всех фильмов через forward-only курсор. Фильмы дозагружаются
+     * пачками по {@link #STREAM_FETCH_SIZE}, поэтому в памяти одновременно находится
+     * не больше одной пачки.
+     */
+    @Override
+    public void forEachFilm(Fields fields, Consumer<Film> action)
+    {
+        List<Film> chunk = new ArrayList<>(STREAM_FETCH_SIZE);
+
+        try {
+            streamingJdbcTemplate.query(SELECT_FILMS_ORDERED_QUERY, rs -> {
+                chunk.add(getFilmDataFromQuery(rs, rs.getRow()));
+                if (chunk.size() == STREAM_FETCH_SIZE) {
+                    hydrateFilms(chunk, fields).forEach(action);
+                    chunk.clear();
+                }
+            });
+            hydrateFilms(chunk, fields).forEach(action);
+        } catch (DataAccessException e) {
+            log.info("Ошибка при потоковом чтении списка фильмов. Причина: {}", e.getCause().getMessage());
+            throw new FilmorateSqlException("Ошибка при чтении списка фильмов");
+        }
+    }
+
+    @Override
+    @Transactional
     public Film createFilm(Film film)
+    {
+        return createFilms(List.of(film)).get(0);
+    }
+
+    /**
+     * Пакетное создание фильмов. Идентификаторы читаются из сгенерированных ключей, жанры всех фильмов
+     * вставляются одним batch-запросом, а возвращаемые фильмы собираются из входных данных и справочников
+     * без повторного чтения из базы.
+     */
+    @Override
+    @Transactional
+    public List<Film> createFilms(List<Film> films)
     {
         try {
-            return createFilmInDb(CREATE_NEW_FILM_QUERY, film);
+            List<Object[]> rows = new ArrayList<>(films.size());
+            for (Film film : films) {
+                rows.add(new Object[] {
+                        film.getName(),
+                        getMpaId(film),
+                        film.getDescription(),
+                        film.getReleaseDate().format(DateTimeFormatter.ISO_DATE),
+                        film.getDuration(),
+                        0});
+            }
+            List<Long> filmIds = JdbcBatchUtils.batchInsert(jdbcTemplate, CREATE_NEW_FILM_QUERY, "Film_ID", rows);
+
+            List<Object[]> genreRows = new ArrayList<>();
+            List<Film> createdFilms = new ArrayList<>(films.size());
+            for (int i = 0; i < films.size(); i++) {
+                Film film = films.get(i);
+                Long filmId = filmIds.get(i);
+
+                List<Genre> genres = getDistinctGenres(film.getGenres());
+                for (Genre genre : genres) {
+                    genreRows.add(new Object[] {filmId, genre.getId()});
+                }
+
+                createdFilms.add(Film.builder()
+                        .id(filmId)
+                        .name(film.getName())
+                        .genres(genres)
+                        .mpa((getMpaId(film) != null) ? mpaStorage.getMpa(getMpaId(film).longValue()) : null)
+                        .description(film.getDescription())
+                        .releaseDate(film.getReleaseDate())
+                        .duration(film.getDuration())
+                        .likesCount(0)
+                        .likesList(new HashSet<>())
+                        .build());
+            }
+            jdbcTemplate.batchUpdate(INSERT_FILM_GENRE_QUERY, genreRows);
+
+            createdFilms.forEach(film -> eventPublisher.publishEvent(new FilmSavedEvent(film)));
+            return createdFilms;
         } catch (DataAccessException e) {
-            log.info("Ошибка при добавлении нового фильма. Причина: {}", e.getCause().getMessage());
+            log.info("Ошибка при добавлении новых фильмов. Причина: {}", e.getMessage());
             throw new FilmorateSqlException("Ошибка при добавлении нового фильма");
         }
     }
 
+    /**
+     * Обновление одной транзакцией. Фильм и его жанры читаются одним запросом с блокировкой строки фильма,
+     * поэтому параллельные обновления одного фильма выполняются по очереди. Если содержимое не изменилось,
+     * в базу ничего не пишется и событие не публикуется. Иначе обновляется строка фильма, а из жанров
+     * удаляются и добавляются только отличающиеся. Если жанры в запросе не заданы, остаются прежние.
+     * <p>
+     * Возвращаемый фильм собирается из запроса, справочников и прочитанного LikesCount без повторного чтения;
+     * список лайков при обновлении не меняется и не заполняется, в ответ PUT /films он не включается.
+     * LikesCount не перезаписывается значением из запроса: счетчик меняют только лайки (см. {@link LikesCountBuffer}).
+     */
     @Override
+    @Transactional
     public Film updateFilm(Film film)
     {
-        String sqlUpdateQuery = "UPDATE FILM "
-                + "SET Name = ?, MPA_Rating = ?, Description = ?, ReleaseDate = ?, Duration = ?, LikesCount = ? "
-                + "WHERE Film_ID = ?;";
-
         try {
             Long filmId = film.getId();
 
-            jdbcTemplate.update(sqlUpdateQuery,
-                    film.getName(),
-                    (film.getMpa() != null) ? film.getMpa().getId() : null,
-                    film.getDescription(),
-                    film.getReleaseDate().format(DateTimeFormatter.ISO_DATE),
-                    film.getDuration(),
-                    film.getLikesCount(),
+            Film storedFilm = jdbcTemplate.query(SELECT_FILM_FOR_UPDATE_QUERY,
+                    (ResultSetExtractor<Film>) this::filmWithGenresFromQuery, filmId);
+            if (storedFilm == null) {
+                log.info("Объект: {} не может быть сохранен. Причина 'Объект с ID = {} не существует'", film, filmId);
+                throw new FilmorateNotFoundException("Ошибка при обновлении данных фильма");
+            }
+
+            Integer mpaId = getMpaId(film);
+            Film updatedFilm = Film.builder()
+                    .id(filmId)
+                    .name(film.getName())
+                    .genres((film.getGenres() != null) ? getDistinctGenres(film.getGenres()) : storedFilm.getGenres())
+                    .mpa((mpaId != null) ? mpaStorage.getMpa(mpaId.longValue()) : null)
+                    .description(film.getDescription())
+                    .releaseDate(film.getReleaseDate())
+                    .duration(film.getDuration())
+                    .likesCount(storedFilm.getLikesCount())
+                    .build();
+
+            if (isSameContent(storedFilm, updatedFilm)) {
+                log.info("Фильм с ID = {} не изменился, обновление пропущено", filmId);
+                return updatedFilm;
+            }
+
+            jdbcTemplate.update(UPDATE_FILM_QUERY,
+                    updatedFilm.getName(),
+                    mpaId,
+                    updatedFilm.getDescription(),
+                    updatedFilm.getReleaseDate().format(DateTimeFormatter.ISO_DATE),
+                    updatedFilm.getDuration(),
                     filmId);
 
-            insertFilmGenres(film.getGenres(), filmId);
+            updateFilmGenres(filmId, genreIds(storedFilm), genreIds(updatedFilm));
 
-            return getFilm(filmId);
-        } catch (EmptyResultDataAccessException e) {
-            log.info("Ошибка при обновлении данных фильма. Причина: {}", e.getMessage());
-            throw new FilmorateNotFoundException("Ошибка при обновлении данных фильма");
+            eventPublisher.publishEvent(new FilmSavedEvent(updatedFilm));
+            return updatedFilm;
         } catch (DataAccessException e) {
-            log.info("Ошибка при обновлении данных фильма. Причина: {}", e.getCause().getMessage());
+            log.info("Ошибка при обновлении данных фильма. Причина: {}", e.getMessage());
             throw new FilmorateSqlException("Ошибка при обновлении данных фильма");
         }
     }
 
     @Override
-    public Film getFilm(Long filmId)
+    public Film getFilm(Long filmId, Fields fields)
     {
         try {
-            return jdbcTemplate.queryForObject(SELECT_FILM_BY_ID_QUERY, this::getFilmDataFromQuery, filmId);
+            Film film = jdbcTemplate.queryForObject(SELECT_FILM_BY_ID_QUERY, this::getFilmDataFromQuery, filmId);
+            return hydrateFilms(List.of(film), fields).get(0);
         } catch (EmptyResultDataAccessException e) {
             log.info("Ошибка при чтении данных фильма. Причина: {}", e.getMessage());
             throw new FilmorateNotFoundException(String.format("Фильм с ID = %d не найден", filmId));
@@ -117,88 +333,201 @@ public class FilmDbStorage implements FilmStorage {
         }
     }
 
+    /**
+     * Чтение фильмов по списку идентификаторов. Порядок результата совпадает с порядком filmIds,
+     * отсутствующие в базе идентификаторы пропускаются.
+     */
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds, Fields fields)
+    {
+        if (filmIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        try {
+            Map<Long, Film> films = new HashMap<>();
+            List<Film> filmList = jdbcTemplate.query(SELECT_FILMS_BY_IDS_QUERY, this::getFilmDataFromQuery,
+                    (Object) filmIds.toArray(Long[]::new));
+            hydrateFilms(filmList, fields).forEach(film -> films.put(film.getId(), film));
+
+            List<Film> result = new ArrayList<>(films.size());
+            for (Long filmId : filmIds) {
+                if (films.containsKey(filmId)) {
+                    result.add(films.get(filmId));
+                }
+            }
+            return result;
+        } catch (DataAccessException e) {
+            log.info("Ошибка при чтении списка фильмов по идентификаторам. Причина: {}", e.getCause().getMessage());
+            throw new FilmorateSqlException("Ошибка при чтении списка фильмов");
+        }
+    }
+
     @Override
-    public List<Film> likedFilmsList(Long count)
+    public Map<Long, Integer> getLikesCounts()
     {
-        String sqlQuery =   "SELECT * "
-                          + "FROM FILM "
-                          + "GROUP BY Film_ID "
-                          + "ORDER BY LIKESCOUNT DESC "
-                          + "LIMIT ?;";
         try {
-            return jdbcTemplate.query(sqlQuery, this::getFilmDataFromQuery, count);
+            Map<Long, Integer> likesCounts = new HashMap<>();
+            jdbcTemplate.query(SELECT_LIKES_COUNTS_QUERY, rs -> {
+                Long filmId = rs.getLong("Film_ID");
+                likesCounts.put(filmId, getLikesCount(rs.getInt("LikesCount"), filmId));
+            });
+            return likesCounts;
         } catch (DataAccessException e) {
-            log.info("Ошибка при чтении списка самых популярных фильмов. Причина: {}", e.getCause().getMessage());
-            throw new FilmorateSqlException("Ошибка при чтении списка самых популярных фильмов");
+            log.info("Ошибка при чтении количества лайков фильмов. Причина: {}", e.getCause().getMessage());
+            throw new FilmorateSqlException("Ошибка при чтении количества лайков фильмов");
         }
     }
 
+    /**
+     * Маппинг базовой строки фильма. Рейтинг MPA берется из справочника в памяти, жанры и лайки
+     * дозагружаются для всей выборки сразу в {@link #hydrateFilms(List, Fields)}.
+     */
     private Film getFilmDataFromQuery(ResultSet rs, int rowNum) throws SQLException {
         MPA mpa = mpaStorage.getMpa(rs.getLong("MPA_Rating"));
-
         Long filmId = rs.getLong("Film_ID");
-        List<Genre> genre = genreStorage.getGenreListByFilmId(filmId);
-        Set<Long> likesList = getLikesListByFilmId(filmId);
 
         return  Film.builder()
                 .id(filmId)
                 .name(rs.getString("Name"))
-                .genres(genre)
+                .genres(new ArrayList<>())
                 .mpa(mpa)
                 .description(rs.getString("Description"))
                 .releaseDate(LocalDate.parse(rs.getString("ReleaseDate"), DateTimeFormatter.ISO_DATE))
                 .duration(rs.getInt("Duration"))
-                .likesCount(rs.getInt("LikesCount"))
-                .likesList(likesList)
+                .likesCount(getLikesCount(rs.getInt("LikesCount"), filmId))
+                .likesList(new HashSet<>())
                 .build();
     }
 
-    private Film createFilmInDb(String query, Film film) {
-        jdbcTemplate.update(query,
-                            film.getName(),
-                            (film.getMpa() != null) ? film.getMpa().getId() : null,
-                            film.getDescription(),
-                            film.getReleaseDate().format(DateTimeFormatter.ISO_DATE),
-                            film.getDuration(),
-                            0);
+    /**
+     * Значение LikesCount с учетом изменений, которые еще не сброшены в базу из {@link LikesCountBuffer}.
+     */
+    private int getLikesCount(int storedLikesCount, Long filmId) {
+        return (int) Math.max(storedLikesCount + likesCountBuffer.getPending(filmId), 0);
+    }
 
-        Long lastId =  jdbcTemplate.queryForObject(GET_LAST_INSERTED_ID_QUERY, Long.class);
+    /**
+     * Дозагрузка жанров и лайков для всей выборки: по одному запросу на вид данных.
+     * Данные, не вошедшие в набор полей, не читаются; у фильмов они остаются незаполненными.
+     */
+    private List<Film> hydrateFilms(List<Film> films, Fields fields) {
+        if (films.isEmpty()) {
+            return films;
+        }
 
-        var fg = film.getGenres();
+        Long[] filmIds = films.stream().map(Film::getId).toArray(Long[]::new);
 
-        insertFilmGenres(fg, lastId);
+        if (fields.contains(Film.GENRES_FIELD)) {
+            Map<Long, List<Genre>> genres = jdbcTemplate.query(SELECT_GENRES_BY_FILM_IDS_QUERY,
+                    (ResultSetExtractor<Map<Long, List<Genre>>>) this::genresByFilmIdFromQuery, (Object) filmIds);
+            films.forEach(film -> film.setGenres(genres.get(film.getId())));
+        }
 
-        return getFilm(lastId);
+        if (fields.contains(Film.LIKES_LIST_FIELD)) {
+            Map<Long, Set<Long>> likes = jdbcTemplate.query(SELECT_LIKES_BY_FILM_IDS_QUERY,
+                    (ResultSetExtractor<Map<Long, Set<Long>>>) this::likesByFilmIdFromQuery, (Object) filmIds);
+            films.forEach(film -> film.setLikesList(likes.getOrDefault(film.getId(), new HashSet<>())));
+        }
+        return films;
     }
 
-    private int[] insertFilmGenres(List<Genre> listGenre, Long filmId) {
-        if (Objects.isNull(listGenre) || Objects.isNull(filmId)) {
-            return new int[]{0};
+    private Map<Long, List<Genre>> genresByFilmIdFromQuery(ResultSet rs) throws SQLException {
+        Map<Long, List<Genre>> genres = new HashMap<>();
+        while (rs.next()) {
+            genres.computeIfAbsent(rs.getLong("Film_ID"), id -> new ArrayList<>())
+                    .add(genreStorage.getGenre(rs.getLong("Genre_ID")));
         }
+        return genres;
+    }
 
-        jdbcTemplate.update(DELETE_ALL_FILM_GENRE_QUERY, filmId);
+    private Map<Long, Set<Long>> likesByFilmIdFromQuery(ResultSet rs) throws SQLException {
+        Map<Long, Set<Long>> likes = new HashMap<>();
+        while (rs.next()) {
+            likes.computeIfAbsent(rs.getLong("Film_ID"), id -> new HashSet<>()).add(rs.getLong("User_ID"));
+        }
+        return likes;
+    }
+
+    private Integer getMpaId(Film film) {
+        return ((film.getMpa() != null) && (film.getMpa().getId() != null) && (film.getMpa().getId() > 0))
+                ? film.getMpa().getId()
+                : null;
+    }
 
-        List<Object[]> batch = new ArrayList<>();
-        for (Genre g : listGenre) {
-            Object[] values = new Object[] {filmId, g.getId()};
-            batch.add(values);
+    /**
+     * Жанры фильма без повторов, упорядоченные по ID и заполненные из справочника.
+     */
+    private List<Genre> getDistinctGenres(List<Genre> genres) {
+        if (Objects.isNull(genres)) {
+            return new ArrayList<>();
         }
-        return this.jdbcTemplate.batchUpdate(INSERT_FILM_GENRE_QUERY, batch);
+
+        return genres.stream()
+                .map(Genre::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .map(genreId -> genreStorage.getGenre(genreId.longValue()))
+                .collect(Collectors.toList());
     }
 
-    private Set<Long> getLikesListByFilmId(Long filmId) {
-        String query = "SELECT User_ID "
-                + "FROM FilmLikes "
-                + "WHERE Film_ID = ?"
-                + ";";
-        try {
-            return new HashSet<>(jdbcTemplate.query(query, this::likesListFromQuery, filmId));
-        } catch (DataAccessException e) {
-            return new HashSet<>();
+    /**
+     * Фильм из строк "фильм + один жанр" (LEFT JOIN с FilmGenres) или null, если фильма нет.
+     */
+    private Film filmWithGenresFromQuery(ResultSet rs) throws SQLException {
+        Film film = null;
+        while (rs.next()) {
+            if (film == null) {
+                film = getFilmDataFromQuery(rs, 0);
+                if (rs.getObject("MPA_Rating") == null) {
+                    film.setMpa(null);
+                }
+            }
+            long genreId = rs.getLong("Genre_ID");
+            if (!rs.wasNull()) {
+                film.getGenres().add(genreStorage.getGenre(genreId));
+            }
         }
+        if (film != null) {
+            film.getGenres().sort(Comparator.comparing(Genre::getId));
+        }
+        return film;
+    }
+
+    private boolean isSameContent(Film storedFilm, Film updatedFilm) {
+        return Objects.equals(storedFilm.getName(), updatedFilm.getName())
+                && Objects.equals(getMpaId(storedFilm), getMpaId(updatedFilm))
+                && Objects.equals(storedFilm.getDescription(), updatedFilm.getDescription())
+                && Objects.equals(storedFilm.getReleaseDate(), updatedFilm.getReleaseDate())
+                && Objects.equals(storedFilm.getDuration(), updatedFilm.getDuration())
+                && genreIds(storedFilm).equals(genreIds(updatedFilm));
     }
 
-    private Long likesListFromQuery(ResultSet rs, int rowNum) throws SQLException {
-        return rs.getLong("User_ID");
+    private static Set<Integer> genreIds(Film film) {
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Удаляет жанры, которых больше нет, и добавляет новые; общие жанры не трогаются.
+     */
+    private void updateFilmGenres(Long filmId, Set<Integer> storedGenreIds, Set<Integer> genreIds) {
+        List<Object[]> deleted = storedGenreIds.stream()
+                .filter(genreId -> !genreIds.contains(genreId))
+                .map(genreId -> new Object[] {filmId, genreId})
+                .collect(Collectors.toList());
+        List<Object[]> added = genreIds.stream()
+                .filter(genreId -> !storedGenreIds.contains(genreId))
+                .map(genreId -> new Object[] {filmId, genreId})
+                .collect(Collectors.toList());
+
+        if (!deleted.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_FILM_GENRE_QUERY, deleted);
+        }
+        if (!added.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_FILM_GENRE_QUERY, added);
+        }
     }
 }
@@ -1,17 +1,51 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import ru.yandex.practicum.filmorate.model.Fields;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
-    List<Film> getFilmsList();
+    default List<Film> getFilmsList() {
+        return getFilmsList(Fields.all());
+    }
+
+    List<Film> getFilmsList(Fields fields);
+
+    default List<Film> getFilmsPage(Long after, Integer limit) {
+        return getFilmsPage(after, limit, Fields.all());
+    }
+
+    List<Film> getFilmsPage(Long after, Integer limit, Fields fields);
+
+    List<Film> getFilmsFiltered(FilmFilter filter, Integer limit, Fields fields);
+
+    default void forEachFilm(Consumer<Film> action) {
+        forEachFilm(Fields.all(), action);
+    }
+
+    void forEachFilm(Fields fields, Consumer<Film> action);
 
     Film createFilm(Film film);
 
+    List<Film> createFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
-    Film getFilm(Long filmId);
+    default Film getFilm(Long filmId) {
+        return getFilm(filmId, Fields.all());
+    }
+
+    Film getFilm(Long filmId, Fields fields);
+
+    default List<Film> getFilmsByIds(List<Long> filmIds) {
+        return getFilmsByIds(filmIds, Fields.all());
+    }
+
+    List<Film> getFilmsByIds(List<Long> filmIds, Fields fields);
 
-    List<Film> likedFilmsList(Long count);
+    Map<Long, Integer> getLikesCounts();
 }
@@ -1,42 +1,223 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.FilmSavedEvent;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateBadRequestException;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.FilmorateSqlException;
+import ru.yandex.practicum.filmorate.model.Fields;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.genre.Genre;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikeTimes;
+import ru.yandex.practicum.filmorate.storage.like.LikedFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.snapshot.SnapshotLoader;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+/**
+ * Потокобезопасное хранилище фильмов в памяти (профиль inmemory).
+ * <p>
+ * ID выдаются атомарным счетчиком, фильмы хранятся в {@link ConcurrentSkipListMap} по возрастанию ID,
+ * поэтому страницы и обход читаются без сортировки. Уникальность названия (аналог unique_Film_Name)
+ * обеспечивается индексом название -> ID, место в котором занимается через putIfAbsent.
+ * Обновление заменяет объект фильма сравнением с прежним (replace), при конфликте попытка повторяется.
+ * Множество лайков фильма конкурентное и переходит от прежней версии фильма к новой.
+ * При старте фильмы и лайки загружаются из снимка, если он есть (см. {@link SnapshotLoader}).
+ */
 @Component("inMemoryFilmStorage")
+@Profile("inmemory")
 @Slf4j
 public class InMemoryFilmStorage implements FilmStorage {
 
-    private Long filmUID = 0L;
-    private final HashMap<Long, Film> films = new HashMap<>();
+    private final AtomicLong filmUID = new AtomicLong();
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> filmIdsByName = new ConcurrentHashMap<>();
 
-    private Long getFilmUID() {
-        return ++filmUID;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private SnapshotLoader snapshotLoader;
+
+    @Autowired
+    private LikeTimes likeTimes;
+
+    @Autowired
+    private LikedFilmsIndex likedFilmsIndex;
+
+    @Autowired
+    @Qualifier("genreCachedStorage")
+    private GenreStorage genreStorage;
+
+    @Autowired
+    @Qualifier("mpaCachedStorage")
+    private MpaStorage mpaStorage;
+
+    /**
+     * Загрузка из снимка идет до того, как хранилище получат индексы в памяти, поэтому события не публикуются.
+     * Лайки читаются за один проход: ID пользователей попадают в множества лайков фильмов и в
+     * {@link LikedFilmsIndex}, время лайков - в {@link LikeTimes}; место под лайки фильма выделяется сразу по размеру группы в снимке.
+     */
+    @PostConstruct
+    public void restoreSnapshot() {
+        snapshotLoader.forEachFilm(this::restoreFilm);
+
+        AtomicLong likesCount = new AtomicLong();
+        snapshotLoader.forEachFilmLikes((filmId, userIds, likedAt, from, to) -> {
+            Film film = films.get(filmId);
+            if (film == null) {
+                return;
+            }
+            if (film.getLikesList().isEmpty()) {
+                film.setLikesList(ConcurrentHashMap.newKeySet(to - from));
+            }
+            Set<Long> likesList = film.getLikesList();
+            for (int i = from; i < to; i++) {
+                likesList.add(userIds.get(i));
+                likedFilmsIndex.add(userIds.get(i), filmId);
+            }
+            likeTimes.putAll(filmId, userIds, likedAt, from, to);
+            likesCount.addAndGet(to - from);
+        });
+
+        films.values().forEach(film -> film.setLikesCount(film.getLikesList().size()));
+        if (!films.isEmpty()) {
+            log.info("Из снимка загружено фильмов: {}, лайков: {}", films.size(), likesCount);
+        }
+    }
+
+    /**
+     * Восстановление фильма с известным ID без проверок и событий. Лайки прежней версии фильма сохраняются,
+     * индекс названий и счетчик ID обновляются.
+     */
+    protected void restoreFilm(Film film) {
+        Film oldFilm = films.get(film.getId());
+        film.setLikesList((oldFilm != null) ? oldFilm.getLikesList() : ConcurrentHashMap.newKeySet());
+        films.put(film.getId(), film);
+
+        if ((oldFilm != null) && !oldFilm.getName().equals(film.getName())) {
+            filmIdsByName.remove(oldFilm.getName(), film.getId());
+        }
+        filmIdsByName.put(film.getName(), film.getId());
+        filmUID.accumulateAndGet(film.getId(), Math::max);
     }
 
     @Override
-    public List<Film> getFilmsList() {
+    public List<Film> getFilmsList(Fields fields) {
         log.info("Текущее количество фильмов: {}", films.size());
         return new ArrayList<>(films.values());
     }
 
+    @Override
+    public List<Film> getFilmsPage(Long after, Integer limit, Fields fields) {
+        return films.tailMap(after, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Индексов по жанру и году здесь нет: при сортировке по ID фильмы перебираются от afterId до набора
+     * страницы, при сортировке по популярности подходящие фильмы сортируются целиком.
+     */
+    @Override
+    public List<Film> getFilmsFiltered(FilmFilter filter, Integer limit, Fields fields) {
+        long afterId = (filter.getAfterId() != null) ? filter.getAfterId() : 0L;
+
+        if (filter.getSort() != FilmFilter.Sort.POPULAR) {
+            return films.tailMap(afterId, false).values().stream()
+                    .filter(film -> matches(film, filter))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+
+        Comparator<Film> byPopularity = Comparator.comparing((Film film) -> film.getLikesList().size()).reversed()
+                .thenComparing(Film::getId);
+        return films.values().stream()
+                .filter(film -> matches(film, filter))
+                .filter(film -> (filter.getAfterId() == null)
+                        || (film.getLikesList().size() < filter.getAfterLikesCount())
+                        || ((film.getLikesList().size() == filter.getAfterLikesCount()) && (film.getId() > afterId)))
+                .sorted(byPopularity)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static boolean matches(Film film, FilmFilter filter) {
+        int year = film.getReleaseDate().getYear();
+        return ((filter.getGenreId() == null)
+                        || film.getGenres().stream().anyMatch(genre -> filter.getGenreId().equals(genre.getId())))
+                && ((filter.getMpaId() == null) || ((film.getMpa() != null) && filter.getMpaId().equals(film.getMpa().getId())))
+                && ((filter.getYearFrom() == null) || (year >= filter.getYearFrom()))
+                && ((filter.getYearTo() == null) || (year <= filter.getYearTo()));
+    }
+
+    @Override
+    public void forEachFilm(Fields fields, Consumer<Film> action) {
+        films.values().forEach(action);
+    }
+
     @Override
     public Film createFilm(Film film) {
-        addFilm(film);
-        return film;
+        return createFilms(List.of(film)).get(0);
+    }
+
+    @Override
+    public List<Film> createFilms(List<Film> films) {
+        films.forEach(this::resolveReferences);
+
+        // Как и в транзакции БД: при нарушении уникальности не сохраняется ни один фильм пачки
+        List<String> reservedNames = new ArrayList<>(films.size());
+        for (Film film : films) {
+            Long uid = filmUID.incrementAndGet();
+            if (filmIdsByName.putIfAbsent(film.getName(), uid) != null) {
+                reservedNames.forEach(filmIdsByName::remove);
+                log.info("Объект: {} не может быть сохранен. Причина 'Фильм с названием {} уже существует'", film, film.getName());
+                throw new FilmorateSqlException("Ошибка при добавлении нового фильма");
+            }
+            reservedNames.add(film.getName());
+            film.setId(uid);
+        }
+
+        for (Film film : films) {
+            addFilm(film);
+        }
+        return films;
     }
 
     @Override
-    public Film getFilm(Long filmId) {
+    public Film getFilm(Long filmId, Fields fields) {
         return films.get(filmId);
     }
 
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds, Fields fields) {
+        return filmIds.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<Long, Integer> getLikesCounts() {
+        return films.values().stream()
+                .collect(Collectors.toMap(Film::getId, film -> film.getLikesList().size()));
+    }
+
     @Override
     public Film updateFilm(Film film) {
         Long uid = film.getId();
@@ -51,42 +232,76 @@ public class InMemoryFilmStorage implements FilmStorage {
             throw new FilmorateBadRequestException("Ошибка обновления объекта. ID должен быть положительным числом");
         }
 
-        Film oldFilm = films.get(uid);
+        resolveReferences(film);
 
-        if (oldFilm == null) {
-            log.info("Объект: {} не может быть сохранен. Причина 'Объект с ID = {} не существует'", film, uid);
-            throw new FilmorateNotFoundException("Ошибка обновления объекта. Объект с ID = " + uid + " не существует");
-        }
+        while (true) {
+            Film oldFilm = films.get(uid);
 
-        log.info("Обновляем объект с ID: {}", uid);
-        log.info("Объект до обновления: {}", oldFilm);
+            if (oldFilm == null) {
+                log.info("Объект: {} не может быть сохранен. Причина 'Объект с ID = {} не существует'", film, uid);
+                throw new FilmorateNotFoundException("Ошибка обновления объекта. Объект с ID = " + uid + " не существует");
+            }
 
-        if (film.getLikesList() == null) {
-            film.setLikesList(new HashSet<>());
-        }
+            boolean renamed = !oldFilm.getName().equals(film.getName());
+            if (renamed && (filmIdsByName.putIfAbsent(film.getName(), uid) != null)) {
+                log.info("Объект: {} не может быть сохранен. Причина 'Фильм с названием {} уже существует'", film, film.getName());
+                throw new FilmorateSqlException("Ошибка при обновлении данных фильма");
+            }
 
-        films.put(uid, film);
+            film.setLikesList(oldFilm.getLikesList());
+            film.setLikesCount(oldFilm.getLikesList().size());
 
-        log.info("Объект после обновления: {}", films.get(film.getId()));
+            if (films.replace(uid, oldFilm, film)) {
+                if (renamed) {
+                    filmIdsByName.remove(oldFilm.getName(), uid);
+                }
+                log.info("Обновлен объект с ID: {}. До обновления: {}, после обновления: {}", uid, oldFilm, film);
+                eventPublisher.publishEvent(new FilmSavedEvent(film));
+                return film;
+            }
 
-        return film;
+            // Фильм успели обновить параллельно: освобождаем название и повторяем с новой версией
+            if (renamed) {
+                filmIdsByName.remove(film.getName(), uid);
+            }
+        }
     }
 
-    @Override
-    public List<Film> likedFilmsList(Long count) {
-        return  films.values().stream()
-                .sorted(Comparator.comparingInt(film -> (-1 * film.getLikesList().size())))
-                .limit((films.size() < count) ? films.size() : count)
-                .collect(Collectors.toList());
+    /**
+     * Замена рейтинга и жанров из запроса (заданных только ID) объектами справочников, как при сохранении в БД:
+     * жанры без повторов и по возрастанию ID. Так сохраненный фильм совпадает с восстановленным из снимка
+     * или журнала после перезапуска. Неизвестный ID приводит к {@link FilmorateNotFoundException}.
+     */
+    protected void resolveReferences(Film film) {
+        if ((film.getMpa() != null) && (film.getMpa().getId() != null)) {
+            film.setMpa(mpaStorage.getMpa(film.getMpa().getId().longValue()));
+        }
+        film.setGenres((film.getGenres() == null) ? null : film.getGenres().stream()
+                .map(Genre::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .map(genreId -> genreStorage.getGenre(genreId.longValue()))
+                .collect(Collectors.toList()));
     }
 
     private void addFilm(Film film) {
-        if (film.getLikesList() == null) {
-            film.setLikesList(new HashSet<>());
+        Set<Long> likesList = ConcurrentHashMap.newKeySet();
+        if (film.getLikesList() != null) {
+            likesList.addAll(film.getLikesList());
         }
+        film.setLikesList(likesList);
+        film.setLikesCount(likesList.size());
 
-        film.setId(getFilmUID());
-        films.put(film.getId(), film);
+        storeFilm(film);
         log.info("Сохранен объект: {}", film);
+        eventPublisher.publishEvent(new FilmSavedEvent(film));
+    }
+
+    /**
+     * Размещение нового фильма, уже получившего ID и название в индексе.
+     */
+    protected void storeFilm(Film film) {
+        films.put(film.getId(), film);
     }
 }
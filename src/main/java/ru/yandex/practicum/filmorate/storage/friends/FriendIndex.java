@@ -0,0 +1,240 @@
+package ru.yandex.practicum.filmorate.storage.friends;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.DatasetLoadedEvent;
+import ru.yandex.practicum.filmorate.event.FriendAddedEvent;
+import ru.yandex.practicum.filmorate.event.FriendDeletedEvent;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Граф дружбы в памяти: для каждого пользователя хранится сжатый битовый набор ID его друзей (Roaring bitmap).
+ * <p>
+ * Общие друзья вычисляются пересечением двух наборов, которое выполняется по контейнерам
+ * и не зависит от размера таблицы Friends. Набор не потокобезопасен, поэтому все обращения к нему
+ * синхронизируются на самом наборе; при пересечении наборы блокируются в порядке возрастания ID пользователя.
+ * Индекс строится при старте по таблице Friends и обновляется событиями {@link FriendsStorage}.
+ */
+@Slf4j
+@Component
+public class FriendIndex {
+
+    @Autowired
+    private FriendsStorage friendsStorage;
+
+    private final Map<Integer, RoaringBitmap> friendsByUserId = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        friendsByUserId.clear();
+        friendsStorage.forEachFriendship(this::addFriend);
+
+        log.info("Индекс друзей построен. Количество пользователей с друзьями: {}", friendsByUserId.size());
+    }
+
+    public void addFriend(Long userId, Long friendId) {
+        RoaringBitmap friends = friendsByUserId.computeIfAbsent(toIndex(userId), id -> new RoaringBitmap());
+        synchronized (friends) {
+            friends.add(toIndex(friendId));
+        }
+    }
+
+    public void deleteFriend(Long userId, Long friendId) {
+        RoaringBitmap friends = friendsByUserId.get(toIndex(userId));
+        if (friends != null) {
+            synchronized (friends) {
+                friends.remove(toIndex(friendId));
+            }
+        }
+    }
+
+    public List<Long> getFriendIds(Long userId) {
+        RoaringBitmap friends = friendsByUserId.get(toIndex(userId));
+        if (friends == null) {
+            return new ArrayList<>();
+        }
+
+        synchronized (friends) {
+            return toIdList(friends);
+        }
+    }
+
+    /**
+     * ID общих друзей двух пользователей в порядке возрастания.
+     */
+    public List<Long> getCommonFriendIds(Long userId, Long otherId) {
+        RoaringBitmap friends = friendsByUserId.get(toIndex(userId));
+        RoaringBitmap otherFriends = friendsByUserId.get(toIndex(otherId));
+        if ((friends == null) || (otherFriends == null)) {
+            return new ArrayList<>();
+        }
+        if (friends == otherFriends) {
+            return getFriendIds(userId);
+        }
+
+        boolean userFirst = userId < otherId;
+        RoaringBitmap first = userFirst ? friends : otherFriends;
+        RoaringBitmap second = userFirst ? otherFriends : friends;
+        synchronized (first) {
+            synchronized (second) {
+                return toIdList(RoaringBitmap.and(first, second));
+            }
+        }
+    }
+
+    /**
+     * ID пользователей, которые не являются друзьями userId, упорядоченные по убыванию количества
+     * общих друзей (при равенстве - по возрастанию ID). Счетчики друзей второго уровня ведутся
+     * в примитивной хеш-таблице, лучшие limit кандидатов отбираются ограниченной кучей.
+     */
+    public List<Long> getSuggestedFriendIds(Long userId, int limit) {
+        int userIndex = toIndex(userId);
+        RoaringBitmap friends = friendsByUserId.get(userIndex);
+        if ((friends == null) || (limit <= 0)) {
+            return new ArrayList<>();
+        }
+
+        RoaringBitmap excluded;
+        synchronized (friends) {
+            excluded = friends.clone();
+        }
+        excluded.add(userIndex);
+
+        IntCounter mutualCounts = new IntCounter();
+        excluded.forEach((int friendIndex) -> {
+            RoaringBitmap friendsOfFriend = (friendIndex != userIndex) ? friendsByUserId.get(friendIndex) : null;
+            if (friendsOfFriend == null) {
+                return;
+            }
+            synchronized (friendsOfFriend) {
+                friendsOfFriend.forEach((int candidate) -> {
+                    if (!excluded.contains(candidate)) {
+                        mutualCounts.increment(candidate);
+                    }
+                });
+            }
+        });
+
+        // В куче лежат кандидаты в виде (количество << 32 | ~ID): минимум кучи - худший из лучших
+        PriorityQueue<Long> top = new PriorityQueue<>(limit + 1);
+        mutualCounts.forEach((candidate, count) -> {
+            top.offer(((long) count << 32) | (~candidate & 0xFFFFFFFFL));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+
+        Long[] ids = new Long[top.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            long packed = top.poll();
+            ids[i] = (long) ~(int) packed;
+        }
+        return Arrays.asList(ids);
+    }
+
+    @EventListener
+    public void onDatasetLoaded(DatasetLoadedEvent event) {
+        rebuild();
+    }
+
+    @EventListener
+    public void onFriendAdded(FriendAddedEvent event) {
+        addFriend(event.getUserId(), event.getFriendId());
+    }
+
+    @EventListener
+    public void onFriendDeleted(FriendDeletedEvent event) {
+        deleteFriend(event.getUserId(), event.getFriendId());
+    }
+
+    private static int toIndex(Long userId) {
+        return Math.toIntExact(userId);
+    }
+
+    private static List<Long> toIdList(RoaringBitmap bitmap) {
+        List<Long> ids = new ArrayList<>(bitmap.getCardinality());
+        bitmap.forEach((int id) -> ids.add((long) id));
+        return ids;
+    }
+
+    /**
+     * Счетчик int -> int с открытой адресацией, без упаковки ключей и значений в объекты.
+     */
+    private static final class IntCounter {
+        private static final int EMPTY = -1;
+
+        private int[] keys = newKeys(16);
+        private int[] counts = new int[16];
+        private int size;
+
+        void increment(int key) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while ((keys[slot] != EMPTY) && (keys[slot] != key)) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    counts[slot] = 1;
+                    resize();
+                    return;
+                }
+            }
+            counts[slot]++;
+        }
+
+        void forEach(IntBiConsumer action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    action.accept(keys[i], counts[i]);
+                }
+            }
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = newKeys(oldKeys.length * 2);
+            counts = new int[oldKeys.length * 2];
+
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = mix(oldKeys[i]) & mask;
+                    while (keys[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IntBiConsumer {
+        void accept(int key, int value);
+    }
+}
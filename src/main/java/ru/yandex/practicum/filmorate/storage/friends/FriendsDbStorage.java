@@ -1,21 +1,36 @@
 package ru.yandex.practicum.filmorate.storage.friends;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.event.FriendAddedEvent;
+import ru.yandex.practicum.filmorate.event.FriendDeletedEvent;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateSqlException;
 
+import java.util.function.BiConsumer;
+
 @Slf4j
 @Component("friendsDbStorage")
 @Repository
+@Profile("!inmemory & !eventlog")
 public class FriendsDbStorage implements FriendsStorage {
 
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public FriendsDbStorage(JdbcTemplate jdbcTemplate) {
+    public FriendsDbStorage(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
         this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(STREAM_FETCH_SIZE);
     }
 
     @Override
@@ -27,6 +42,7 @@ public class FriendsDbStorage implements FriendsStorage {
         try {
             int result = jdbcTemplate.update(sqlQueryUpdate, 1, friendId, userId);
             jdbcTemplate.update(sqlQueryInsert, userId, friendId, result);
+            eventPublisher.publishEvent(new FriendAddedEvent(userId, friendId));
         } catch (DataAccessException e) {
             log.info("Ошибка добавления пользователя friendId = {} в друзья пользователя userID = {}. Причина: {}", friendId, userId, e.getCause().getMessage());
             throw new FilmorateSqlException("Ошибка добавления пользователя в друзья");
@@ -41,11 +57,28 @@ public class FriendsDbStorage implements FriendsStorage {
 
         try {
             jdbcTemplate.update(sqlQueryUpdate, 0, friendId, userId);
-            jdbcTemplate.update(sqlQueryDelete, userId, friendId);
-
+            if (jdbcTemplate.update(sqlQueryDelete, userId, friendId) > 0) {
+                eventPublisher.publishEvent(new FriendDeletedEvent(userId, friendId));
+            }
         } catch (DataAccessException e) {
             log.info("Ошибка при удалении пользователя friendId = {} из друзей пользователя userID = {}. Причина: {}", friendId, userId, e.getCause().getMessage());
             throw new FilmorateSqlException("Ошибка при удалении пользователя из друзей");
         }
     }
+
+    /**
+     * Потоковое чтение всех записей таблицы Friends в виде пар (User_From, User_To).
+     */
+    @Override
+    public void forEachFriendship(BiConsumer<Long, Long> action)
+    {
+        try {
+            streamingJdbcTemplate.query("SELECT User_From, User_To FROM Friends;", rs -> {
+                action.accept(rs.getLong("User_From"), rs.getLong("User_To"));
+            });
+        } catch (DataAccessException e) {
+            log.info("Ошибка при чтении списка друзей. Причина: {}", e.getCause().getMessage());
+            throw new FilmorateSqlException("Ошибка при чтении списка друзей");
+        }
+    }
 }
@@ -1,6 +1,9 @@
 package ru.yandex.practicum.filmorate.storage.friends;
 
+import java.util.function.BiConsumer;
+
 public interface FriendsStorage {
     void addFriends(Long userId, Long friendId);
     void deleteFriend(Long userId, Long friendId);
+    void forEachFriendship(BiConsumer<Long, Long> action);
 }
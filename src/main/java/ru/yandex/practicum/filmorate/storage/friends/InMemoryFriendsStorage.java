@@ -2,27 +2,39 @@ package ru.yandex.practicum.filmorate.storage.friends;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.FriendAddedEvent;
+import ru.yandex.practicum.filmorate.event.FriendDeletedEvent;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.function.BiConsumer;
+
 @Component("inMemoryFriendsStorage")
+@Profile("inmemory")
 @Slf4j
 public class InMemoryFriendsStorage implements FriendsStorage {
 
     @Autowired
-    @Qualifier("inMemoryUserStorage")
     private UserStorage userStorage;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public void addFriends(Long userId, Long friendId) {
         User user_1 = checkUser(userId);
         User user_2 = checkUser(friendId);
 
-        user_1.getFriends().add(friendId);
-        user_2.getFriends().add(userId);
+        if (storeFriend(user_1, friendId)) {
+            eventPublisher.publishEvent(new FriendAddedEvent(userId, friendId));
+        }
+        if (storeFriend(user_2, userId)) {
+            eventPublisher.publishEvent(new FriendAddedEvent(friendId, userId));
+        }
     }
 
     @Override
@@ -30,8 +42,17 @@ public class InMemoryFriendsStorage implements FriendsStorage {
         User user_1 = checkUser(userId);
         User user_2 = checkUser(friendId);
 
-        user_1.getFriends().remove(friendId);
-        user_2.getFriends().remove(userId);
+        if (removeFriend(user_1, friendId)) {
+            eventPublisher.publishEvent(new FriendDeletedEvent(userId, friendId));
+        }
+        if (removeFriend(user_2, userId)) {
+            eventPublisher.publishEvent(new FriendDeletedEvent(friendId, userId));
+        }
+    }
+
+    @Override
+    public void forEachFriendship(BiConsumer<Long, Long> action) {
+        userStorage.forEachUser(user -> user.getFriends().forEach(friendId -> action.accept(user.getId(), friendId)));
     }
 
     private User checkUser(Long userId) {
@@ -42,4 +63,17 @@ public class InMemoryFriendsStorage implements FriendsStorage {
         return user;
     }
 
+    /**
+     * Добавление заявки в друзья от user к friendId. Возвращает false, если заявка уже есть.
+     */
+    protected boolean storeFriend(User user, Long friendId) {
+        return user.getFriends().add(friendId);
+    }
+
+    /**
+     * Удаление заявки в друзья от user к friendId. Возвращает false, если заявки не было.
+     */
+    protected boolean removeFriend(User user, Long friendId) {
+        return user.getFriends().remove(friendId);
+    }
 }
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage.genre;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
+import ru.yandex.practicum.filmorate.model.genre.Genre;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Справочник жанров в памяти. Таблица Genre заполняется один раз из data.sql,
+ * поэтому при старте она целиком читается в массив, индексированный по Genre_ID.
+ * Перечитать справочник можно через {@link #refresh()}.
+ */
+@Slf4j
+@Component("genreCachedStorage")
+public class GenreCachedStorage implements GenreStorage {
+
+    @Autowired
+    @Qualifier("genreDbStorage")
+    private GenreStorage genreStorage;
+
+    private volatile Genre[] genreById = new Genre[0];
+
+    @PostConstruct
+    public void refresh() {
+        List<Genre> genreList = genreStorage.getGenreList();
+
+        Genre[] byId = new Genre[genreList.stream().mapToInt(Genre::getId).max().orElse(0) + 1];
+        for (Genre genre : genreList) {
+            byId[genre.getId()] = genre;
+        }
+
+        genreById = byId;
+        log.info("Справочник жанров загружен. Количество записей: {}", genreList.size());
+    }
+
+    @Override
+    public List<Genre> getGenreList() {
+        List<Genre> genreList = new ArrayList<>();
+        for (Genre genre : genreById) {
+            if (Objects.nonNull(genre)) {
+                genreList.add(genre);
+            }
+        }
+        return genreList;
+    }
+
+    @Override
+    public Genre getGenre(Long genreId) {
+        Genre[] byId = genreById;
+        if ((genreId <= 0) || (genreId >= byId.length) || Objects.isNull(byId[genreId.intValue()])) {
+            log.info("Ошибка при чтении данных жанра с genreId = {}. Жанр не найден", genreId);
+            throw new FilmorateNotFoundException("Ошибка при чтении данных жанра");
+        }
+        return byId[genreId.intValue()];
+    }
+
+    @Override
+    public List<Genre> getGenreListByFilmId(Long filmId) {
+        return genreStorage.getGenreListByFilmId(filmId);
+    }
+}
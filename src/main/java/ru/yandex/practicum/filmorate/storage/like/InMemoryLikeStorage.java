@@ -2,19 +2,46 @@ package ru.yandex.practicum.filmorate.storage.like;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.LikeAddedEvent;
+import ru.yandex.practicum.filmorate.event.LikeDeletedEvent;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.like.Like;
+import ru.yandex.practicum.filmorate.model.like.LikeResult;
+import ru.yandex.practicum.filmorate.model.like.LikeStatus;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 @Component("inMemoryLikeStorage")
+@Profile("inmemory")
 @Slf4j
 public class InMemoryLikeStorage implements LikeStorage {
     @Autowired
-    @Qualifier("inMemoryFilmStorage")
     private FilmStorage filmStorage;
 
+    @Autowired
+    private UserStorage userStorage;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Время каждого лайка и лайки каждого пользователя: в модели фильма хранятся только ID пользователей.
+    // Из снимка их загружает хранилище фильмов
+    @Autowired
+    private LikeTimes likeTimes;
+
+    @Autowired
+    private LikedFilmsIndex likedFilmsIndex;
+
     @Override
     public void addLike(Long filmId, Long userId) {
         Film film = filmStorage.getFilm(filmId);
@@ -23,7 +50,10 @@ public class InMemoryLikeStorage implements LikeStorage {
             throw new FilmorateNotFoundException("Ошибка добавления лайка. Фильм с ID = " + filmId + " не существует");
         }
 
-        film.getLikesList().add(userId);
+        Instant likedAt = Instant.now();
+        if (storeLike(film, userId, likedAt)) {
+            eventPublisher.publishEvent(new LikeAddedEvent(filmId, userId, likedAt));
+        }
     }
 
     @Override
@@ -34,10 +64,104 @@ public class InMemoryLikeStorage implements LikeStorage {
             throw new FilmorateNotFoundException("Ошибка удаления лайка. Фильм с ID = " + filmId + " не существует");
         }
 
-        if (!film.getLikesList().contains(userId)) {
+        Instant likedAt = removeLike(film, userId);
+        if (likedAt == null) {
             throw new FilmorateNotFoundException("Ошибка удаления лайка. Фильм с ID = " + filmId + " не содержит лайка от пользователя с id = " + userId);
         }
 
-        film.getLikesList().remove(userId);
+        eventPublisher.publishEvent(new LikeDeletedEvent(filmId, userId, likedAt));
+    }
+
+    @Override
+    public List<LikeResult> addLikes(List<Like> likes) {
+        List<LikeResult> results = new ArrayList<>(likes.size());
+
+        for (Like like : likes) {
+            LikeResult result = LikeResult.builder()
+                    .filmId((like != null) ? like.getFilmId() : null)
+                    .userId((like != null) ? like.getUserId() : null)
+                    .status(LikeStatus.ADDED)
+                    .build();
+
+            Film film = (result.getFilmId() != null) ? filmStorage.getFilm(result.getFilmId()) : null;
+
+            if ((result.getFilmId() == null) || (result.getUserId() == null)) {
+                result.setStatus(LikeStatus.INVALID);
+            } else if (film == null) {
+                result.setStatus(LikeStatus.FILM_NOT_FOUND);
+            } else if (userStorage.getUser(result.getUserId()) == null) {
+                result.setStatus(LikeStatus.USER_NOT_FOUND);
+            } else {
+                Instant likedAt = Instant.now();
+                if (storeLike(film, result.getUserId(), likedAt)) {
+                    eventPublisher.publishEvent(new LikeAddedEvent(film.getId(), result.getUserId(), likedAt));
+                } else {
+                    result.setStatus(LikeStatus.ALREADY_EXISTS);
+                }
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    @Override
+    public void forEachLike(BiConsumer<Long, Long> action) {
+        filmStorage.forEachFilm(film -> film.getLikesList().forEach(userId -> action.accept(film.getId(), userId)));
+    }
+
+    @Override
+    public void forEachLikeSince(Instant since, BiConsumer<Long, Instant> action) {
+        long sinceMillis = since.toEpochMilli();
+        likeTimes.forEach((filmId, userId, likedAt) -> {
+            if (likedAt >= sinceMillis) {
+                action.accept(filmId, Instant.ofEpochMilli(likedAt));
+            }
+        });
+    }
+
+    @Override
+    public List<Long> getLikerIds(Long filmId, Long after, Integer limit) {
+        Film film = filmStorage.getFilm(filmId);
+
+        if (film == null) {
+            throw new FilmorateNotFoundException("Ошибка чтения лайков. Фильм с ID = " + filmId + " не существует");
+        }
+
+        return film.getLikesList().stream()
+                .filter(userId -> userId > after)
+                .sorted()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> getLikedFilmIds(Long userId, Long after, Integer limit) {
+        return likedFilmsIndex.getPage(userId, after, limit);
+    }
+
+    /**
+     * Добавление лайка фильму с временем likedAt. Возвращает false, если лайк уже есть.
+     */
+    protected boolean storeLike(Film film, Long userId, Instant likedAt) {
+        if (!film.getLikesList().add(userId)) {
+            return false;
+        }
+        likeTimes.put(film.getId(), userId, likedAt.toEpochMilli());
+        likedFilmsIndex.add(userId, film.getId());
+        film.setLikesCount(film.getLikesList().size());
+        return true;
+    }
+
+    /**
+     * Удаление лайка. Возвращает время удаленного лайка или null, если лайка не было.
+     */
+    protected Instant removeLike(Film film, Long userId) {
+        if (!film.getLikesList().remove(userId)) {
+            return null;
+        }
+        film.setLikesCount(film.getLikesList().size());
+        likedFilmsIndex.remove(userId, film.getId());
+        long likedAt = likeTimes.remove(film.getId(), userId);
+        return (likedAt != LikeTimes.NO_TIME) ? Instant.ofEpochMilli(likedAt) : Instant.now();
     }
 }
@@ -1,36 +1,75 @@
 package ru.yandex.practicum.filmorate.storage.like;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.event.LikeAddedEvent;
+import ru.yandex.practicum.filmorate.event.LikeDeletedEvent;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateSqlException;
+import ru.yandex.practicum.filmorate.model.like.Like;
+import ru.yandex.practicum.filmorate.model.like.LikeResult;
+import ru.yandex.practicum.filmorate.model.like.LikeStatus;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.BiConsumer;
 
 @Slf4j
 @Component("likeDbStorage")
 @Repository
+@Profile("!inmemory & !eventlog")
 public class LikeDbStorage implements LikeStorage {
 
+    private static final int BATCH_SIZE = 1000;
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LikesCountBuffer likesCountBuffer;
+    private final ApplicationEventPublisher eventPublisher;
 
-    private final String ADD_LIKE_QUERY = "INSERT INTO FilmLikes (User_ID, Film_ID) "
-            + "VALUES (?, ?) ON DUPLICATE KEY UPDATE User_ID = User_ID, Film_ID = Film_ID;";
+    private final String ADD_LIKE_QUERY = "INSERT INTO FilmLikes (User_ID, Film_ID, Created_At) "
+            + "VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE User_ID = User_ID, Film_ID = Film_ID;";
+    private final String SELECT_LIKE_CREATED_AT_QUERY = "SELECT Created_At FROM FilmLikes WHERE (User_ID = ?) AND (Film_ID = ?);";
     private final String DELETE_LIKE_QUERY = "DELETE FROM FilmLikes WHERE (User_ID = ?) AND (Film_ID = ?);";
-    private final String INC_LIKE_COUNTER_QUERY = "UPDATE FILM SET LikesCount=LikesCount+1 WHERE Film_ID = ?;";
-    private final String DEC_LIKE_COUNTER_QUERY = "UPDATE FILM SET LikesCount=LikesCount-1 WHERE (Film_ID = ?) AND (LikesCount > 0);";
+    private final String SELECT_LIKES_SINCE_QUERY = "SELECT Film_ID, Created_At FROM FilmLikes WHERE Created_At >= ?;";
+    private final String SELECT_LIKER_IDS_PAGE_QUERY = "SELECT User_ID FROM FilmLikes "
+            + "WHERE (Film_ID = ?) AND (User_ID > ?) ORDER BY User_ID LIMIT ?;";
+    private final String SELECT_LIKED_FILM_IDS_PAGE_QUERY = "SELECT Film_ID FROM FilmLikes "
+            + "WHERE (User_ID = ?) AND (Film_ID > ?) ORDER BY Film_ID LIMIT ?;";
+    private final String SELECT_EXISTING_FILMS_QUERY = "SELECT Film_ID FROM FILM WHERE Film_ID = ANY(?);";
+    private final String SELECT_EXISTING_USERS_QUERY = "SELECT User_ID FROM USER WHERE User_ID = ANY(?);";
+    private final String SELECT_EXISTING_LIKES_QUERY = "SELECT User_ID, Film_ID FROM FilmLikes "
+            + "WHERE (Film_ID = ANY(?)) AND (User_ID = ANY(?));";
 
-    public LikeDbStorage(JdbcTemplate jdbcTemplate) {
+    public LikeDbStorage(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                         LikesCountBuffer likesCountBuffer, ApplicationEventPublisher eventPublisher) {
         this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.likesCountBuffer = likesCountBuffer;
+        this.eventPublisher = eventPublisher;
+
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(STREAM_FETCH_SIZE);
     }
 
     @Override
     public void addLike(Long filmId, Long userId)
     {
+        Instant likedAt = Instant.now();
         try {
-            if (jdbcTemplate.update(ADD_LIKE_QUERY, userId, filmId) > 0)
+            if (jdbcTemplate.update(ADD_LIKE_QUERY, userId, filmId, Timestamp.from(likedAt)) > 0)
             {
-                jdbcTemplate.update(INC_LIKE_COUNTER_QUERY, filmId);
+                likesCountBuffer.add(filmId, 1);
+                eventPublisher.publishEvent(new LikeAddedEvent(filmId, userId, likedAt));
             }
         } catch (DataAccessException e) {
             log.info("Ошибка добавления лайка от userID = {} для filmID = {}. Причина: {}", userId, filmId, e.getCause().getMessage());
@@ -38,17 +77,200 @@ public class LikeDbStorage implements LikeStorage {
         }
     }
 
+    /**
+     * Перед удалением читается время лайка (поиск по первичному ключу): по нему подписчики
+     * находят, в какой интервал времени лайк был учтен.
+     */
     @Override
     public void deleteLike(Long filmId, Long userId)
     {
         try {
+            List<Timestamp> createdAt = jdbcTemplate.queryForList(SELECT_LIKE_CREATED_AT_QUERY, Timestamp.class, userId, filmId);
+            if (createdAt.isEmpty()) {
+                return;
+            }
+
             if (jdbcTemplate.update(DELETE_LIKE_QUERY, userId, filmId) > 0)
             {
-                jdbcTemplate.update(DEC_LIKE_COUNTER_QUERY, filmId);
+                likesCountBuffer.add(filmId, -1);
+                eventPublisher.publishEvent(new LikeDeletedEvent(filmId, userId, createdAt.get(0).toInstant()));
             }
         } catch (DataAccessException e) {
             log.info("Ошибка удаления лайка от userID = {} для filmID = {}. Причина: {}", userId, filmId, e.getCause().getMessage());
             throw new FilmorateSqlException(String.format("Ошибка удаления лайка от userID = %d для filmID = %d", userId, filmId));
         }
     }
+
+    /**
+     * Страница ID пользователей, лайкнувших фильм (keyset по User_ID, индекс по (Film_ID, User_ID)).
+     */
+    @Override
+    public List<Long> getLikerIds(Long filmId, Long after, Integer limit)
+    {
+        try {
+            return jdbcTemplate.queryForList(SELECT_LIKER_IDS_PAGE_QUERY, Long.class, filmId, after, limit);
+        } catch (DataAccessException e) {
+            log.info("Ошибка при чтении лайков фильма с filmID = {}. Причина: {}", filmId, e.getCause().getMessage());
+            throw new FilmorateSqlException(String.format("Ошибка при чтении лайков фильма с filmID = %d", filmId));
+        }
+    }
+
+    /**
+     * Страница ID фильмов, лайкнутых пользователем (keyset по Film_ID, первичный ключ (User_ID, Film_ID)).
+     */
+    @Override
+    public List<Long> getLikedFilmIds(Long userId, Long after, Integer limit)
+    {
+        try {
+            return jdbcTemplate.queryForList(SELECT_LIKED_FILM_IDS_PAGE_QUERY, Long.class, userId, after, limit);
+        } catch (DataAccessException e) {
+            log.info("Ошибка при чтении лайков пользователя с userID = {}. Причина: {}", userId, e.getCause().getMessage());
+            throw new FilmorateSqlException(String.format("Ошибка при чтении лайков пользователя с userID = %d", userId));
+        }
+    }
+
+    /**
+     * Потоковое чтение всех записей таблицы FilmLikes в виде пар (Film_ID, User_ID).
+     */
+    @Override
+    public void forEachLike(BiConsumer<Long, Long> action)
+    {
+        try {
+            streamingJdbcTemplate.query("SELECT Film_ID, User_ID FROM FilmLikes;", rs -> {
+                action.accept(rs.getLong("Film_ID"), rs.getLong("User_ID"));
+            });
+        } catch (DataAccessException e) {
+            log.info("Ошибка при чтении списка лайков. Причина: {}", e.getCause().getMessage());
+            throw new FilmorateSqlException("Ошибка при чтении списка лайков");
+        }
+    }
+
+    @Override
+    public void forEachLikeSince(Instant since, BiConsumer<Long, Instant> action)
+    {
+        try {
+            streamingJdbcTemplate.query(SELECT_LIKES_SINCE_QUERY, rs -> {
+                action.accept(rs.getLong("Film_ID"), rs.getTimestamp("Created_At").toInstant());
+            }, Timestamp.from(since));
+        } catch (DataAccessException e) {
+            log.info("Ошибка при чтении списка лайков. Причина: {}", e.getCause().getMessage());
+            throw new FilmorateSqlException("Ошибка при чтении списка лайков");
+        }
+    }
+
+    /**
+     * Пакетное добавление лайков. Лайки обрабатываются пачками по {@link #BATCH_SIZE}: на пачку
+     * выполняются три проверочных запроса и один batch INSERT, а счетчик LikesCount каждого
+     * затронутого фильма изменяется один раз на всю пачку.
+     * <p>
+     * Каждая пачка записывается в своей транзакции, события и счетчики обновляются после ее фиксации.
+     * Если пачка не записалась, ее лайки получают статус {@link LikeStatus#ERROR}, а результаты
+     * уже зафиксированных пачек возвращаются как есть.
+     */
+    @Override
+    public List<LikeResult> addLikes(List<Like> likes)
+    {
+        List<LikeResult> results = new ArrayList<>(likes.size());
+        for (int from = 0; from < likes.size(); from += BATCH_SIZE) {
+            List<Like> batch = likes.subList(from, Math.min(from + BATCH_SIZE, likes.size()));
+            Instant likedAt = Instant.now();
+            try {
+                List<LikeResult> batchResults = transactionTemplate.execute(status -> addLikesBatch(batch, likedAt));
+                publishAddedLikes(batchResults, likedAt);
+                results.addAll(batchResults);
+            } catch (DataAccessException e) {
+                log.info("Ошибка пакетного добавления лайков с {} по {}. Причина: {}",
+                        from, from + batch.size() - 1, e.getMessage());
+                for (Like like : batch) {
+                    results.add(LikeResult.builder()
+                            .filmId((like != null) ? like.getFilmId() : null)
+                            .userId((like != null) ? like.getUserId() : null)
+                            .status(LikeStatus.ERROR)
+                            .build());
+                }
+            }
+        }
+        return results;
+    }
+
+    private List<LikeResult> addLikesBatch(List<Like> likes, Instant likedAt) {
+        Set<Long> filmIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (Like like : likes) {
+            if (isValidLike(like)) {
+                filmIds.add(like.getFilmId());
+                userIds.add(like.getUserId());
+            }
+        }
+
+        Set<Long> existingFilmIds = selectExistingIds(SELECT_EXISTING_FILMS_QUERY, filmIds);
+        Set<Long> existingUserIds = selectExistingIds(SELECT_EXISTING_USERS_QUERY, userIds);
+        Set<Like> knownLikes = new HashSet<>();
+        if (!filmIds.isEmpty()) {
+            jdbcTemplate.query(SELECT_EXISTING_LIKES_QUERY, rs -> {
+                knownLikes.add(new Like(rs.getLong("Film_ID"), rs.getLong("User_ID")));
+            }, filmIds.toArray(Long[]::new), userIds.toArray(Long[]::new));
+        }
+
+        List<LikeResult> results = new ArrayList<>(likes.size());
+        List<LikeResult> inserted = new ArrayList<>();
+        for (Like like : likes) {
+            LikeResult result = LikeResult.builder()
+                    .filmId((like != null) ? like.getFilmId() : null)
+                    .userId((like != null) ? like.getUserId() : null)
+                    .status(LikeStatus.ADDED)
+                    .build();
+
+            if (!isValidLike(like)) {
+                result.setStatus(LikeStatus.INVALID);
+            } else if (!existingFilmIds.contains(like.getFilmId())) {
+                result.setStatus(LikeStatus.FILM_NOT_FOUND);
+            } else if (!existingUserIds.contains(like.getUserId())) {
+                result.setStatus(LikeStatus.USER_NOT_FOUND);
+            } else if (!knownLikes.add(like)) {
+                result.setStatus(LikeStatus.ALREADY_EXISTS);
+            } else {
+                inserted.add(result);
+            }
+            results.add(result);
+        }
+
+        List<Object[]> batch = new ArrayList<>(inserted.size());
+        for (LikeResult result : inserted) {
+            batch.add(new Object[] {result.getUserId(), result.getFilmId(), Timestamp.from(likedAt)});
+        }
+        int[] updateCounts = jdbcTemplate.batchUpdate(ADD_LIKE_QUERY, batch);
+
+        // Лайк мог быть добавлен параллельным запросом после проверки
+        for (int i = 0; i < inserted.size(); i++) {
+            if (updateCounts[i] == 0) {
+                inserted.get(i).setStatus(LikeStatus.ALREADY_EXISTS);
+            }
+        }
+        return results;
+    }
+
+    private void publishAddedLikes(List<LikeResult> results, Instant likedAt) {
+        Map<Long, Integer> addedByFilmId = new HashMap<>();
+        for (LikeResult result : results) {
+            if (result.getStatus() == LikeStatus.ADDED) {
+                addedByFilmId.merge(result.getFilmId(), 1, Integer::sum);
+                eventPublisher.publishEvent(new LikeAddedEvent(result.getFilmId(), result.getUserId(), likedAt));
+            }
+        }
+        addedByFilmId.forEach(likesCountBuffer::add);
+    }
+
+    private Set<Long> selectExistingIds(String query, Set<Long> ids) {
+        if (ids.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(query, Long.class, (Object) ids.toArray(Long[]::new)));
+    }
+
+    private boolean isValidLike(Like like) {
+        return (like != null)
+                && (like.getFilmId() != null) && (like.getFilmId() > 0)
+                && (like.getUserId() != null) && (like.getUserId() > 0);
+    }
 }
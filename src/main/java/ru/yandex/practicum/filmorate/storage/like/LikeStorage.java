@@ -1,6 +1,22 @@
 package ru.yandex.practicum.filmorate.storage.like;
 
+import ru.yandex.practicum.filmorate.model.like.Like;
+import ru.yandex.practicum.filmorate.model.like.LikeResult;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.BiConsumer;
+
 public interface LikeStorage {
     void addLike(Long filmId, Long userId);
     void deleteLike(Long filmId, Long userId);
+    List<LikeResult> addLikes(List<Like> likes);
+    void forEachLike(BiConsumer<Long, Long> action);
+
+    /**
+     * Обход лайков, поставленных не раньше since, в виде пар (ID фильма, время лайка).
+     */
+    void forEachLikeSince(Instant since, BiConsumer<Long, Instant> action);
+    List<Long> getLikerIds(Long filmId, Long after, Integer limit);
+    List<Long> getLikedFilmIds(Long userId, Long after, Integer limit);
 }
@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Время лайков хранилищ в памяти (профили inmemory и eventlog).
+ * <p>
+ * В модели фильма хранятся только ID пользователей, время лайка хранится здесь: для каждого фильма -
+ * таблица ID пользователя -> время в миллисекундах с открытой адресацией на примитивных массивах, без
+ * объектов на каждый лайк. Таблица фильма меняется под его блокировкой. Общий компонент заполняют
+ * хранилище фильмов (при загрузке снимка и повторе журнала, за один проход по лайкам) и хранилище лайков.
+ */
+@Component
+@Profile({"inmemory", "eventlog"})
+public class LikeTimes {
+
+    /**
+     * Возвращается вместо времени, если лайка нет.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    @FunctionalInterface
+    public interface LikeTimeVisitor {
+        void visit(long filmId, long userId, long likedAtMillis);
+    }
+
+    private final Map<Long, FilmLikeTimes> timesByFilmId = new ConcurrentHashMap<>();
+
+    public void put(long filmId, long userId, long likedAtMillis) {
+        timesByFilmId.computeIfAbsent(filmId, id -> new FilmLikeTimes(0)).put(userId, likedAtMillis);
+    }
+
+    /**
+     * Время лайков фильма из позиций [from, to) колонок снимка. Таблица фильма сразу расширяется на все лайки.
+     */
+    public void putAll(long filmId, LongBuffer userIds, LongBuffer likedAt, int from, int to) {
+        FilmLikeTimes times = timesByFilmId.computeIfAbsent(filmId, id -> new FilmLikeTimes(to - from));
+        times.putAll(userIds, likedAt, from, to);
+    }
+
+    /**
+     * Время лайка или {@link #NO_TIME}.
+     */
+    public long get(long filmId, long userId) {
+        FilmLikeTimes times = timesByFilmId.get(filmId);
+        return (times != null) ? times.get(userId) : NO_TIME;
+    }
+
+    /**
+     * Удаляет время лайка и возвращает его или {@link #NO_TIME}, если его не было.
+     */
+    public long remove(long filmId, long userId) {
+        FilmLikeTimes times = timesByFilmId.get(filmId);
+        return (times != null) ? times.remove(userId) : NO_TIME;
+    }
+
+    public void forEach(LikeTimeVisitor visitor) {
+        timesByFilmId.forEach((filmId, times) -> times.forEach(filmId, visitor));
+    }
+
+    // Линейное пробирование, заполнение не больше половины; пустая ячейка - NO_TIME в ключе
+    private static final class FilmLikeTimes {
+
+        private static final int MIN_CAPACITY = 4;
+
+        private long[] userIds;
+        private long[] likedAt;
+        private int size;
+
+        FilmLikeTimes(int expectedSize) {
+            allocate(capacityFor(expectedSize));
+        }
+
+        synchronized void put(long userId, long likedAtMillis) {
+            if (userId == NO_TIME) {
+                return;
+            }
+            ensureCapacity(size + 1);
+            insert(userId, likedAtMillis);
+        }
+
+        synchronized void putAll(LongBuffer userIdColumn, LongBuffer likedAtColumn, int from, int to) {
+            ensureCapacity(size + (to - from));
+            for (int i = from; i < to; i++) {
+                long userId = userIdColumn.get(i);
+                if (userId != NO_TIME) {
+                    insert(userId, likedAtColumn.get(i));
+                }
+            }
+        }
+
+        synchronized long get(long userId) {
+            int slot = find(userId);
+            return (slot >= 0) ? likedAt[slot] : NO_TIME;
+        }
+
+        synchronized long remove(long userId) {
+            int slot = find(userId);
+            if (slot < 0) {
+                return NO_TIME;
+            }
+            long removed = likedAt[slot];
+
+            // Сдвигаем следующие записи цепочки на освободившееся место, чтобы поиск не обрывался на пустой ячейке
+            int mask = userIds.length - 1;
+            int free = slot;
+            int next = (free + 1) & mask;
+            while (userIds[next] != NO_TIME) {
+                int home = slot(userIds[next], mask);
+                if (((next - home) & mask) >= ((next - free) & mask)) {
+                    userIds[free] = userIds[next];
+                    likedAt[free] = likedAt[next];
+                    free = next;
+                }
+                next = (next + 1) & mask;
+            }
+            userIds[free] = NO_TIME;
+            size--;
+            return removed;
+        }
+
+        synchronized void forEach(long filmId, LikeTimeVisitor visitor) {
+            for (int i = 0; i < userIds.length; i++) {
+                if (userIds[i] != NO_TIME) {
+                    visitor.visit(filmId, userIds[i], likedAt[i]);
+                }
+            }
+        }
+
+        private void insert(long userId, long likedAtMillis) {
+            int mask = userIds.length - 1;
+            int i = slot(userId, mask);
+            while ((userIds[i] != NO_TIME) && (userIds[i] != userId)) {
+                i = (i + 1) & mask;
+            }
+            if (userIds[i] == NO_TIME) {
+                userIds[i] = userId;
+                size++;
+            }
+            likedAt[i] = likedAtMillis;
+        }
+
+        private int find(long userId) {
+            int mask = userIds.length - 1;
+            int i = slot(userId, mask);
+            while (userIds[i] != NO_TIME) {
+                if (userIds[i] == userId) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void ensureCapacity(int expectedSize) {
+            if (expectedSize * 2 <= userIds.length) {
+                return;
+            }
+            long[] oldUserIds = userIds;
+            long[] oldLikedAt = likedAt;
+            allocate(capacityFor(expectedSize));
+            size = 0;
+            for (int i = 0; i < oldUserIds.length; i++) {
+                if (oldUserIds[i] != NO_TIME) {
+                    insert(oldUserIds[i], oldLikedAt[i]);
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            userIds = new long[capacity];
+            likedAt = new long[capacity];
+            Arrays.fill(userIds, NO_TIME);
+        }
+
+        private static int capacityFor(int expectedSize) {
+            int capacity = MIN_CAPACITY;
+            while (capacity < expectedSize * 2) {
+                capacity <<= 1;
+            }
+            return capacity;
+        }
+
+        private static int slot(long userId, int mask) {
+            long hash = userId * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
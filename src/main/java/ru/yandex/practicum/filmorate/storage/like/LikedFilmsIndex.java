@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Лайкнутые фильмы пользователей для хранилищ в памяти (профили inmemory и eventlog).
+ * <p>
+ * Для каждого пользователя хранится отсортированный массив ID лайкнутых фильмов, поэтому страница
+ * GET /users/{id}/likes читается бинарным поиском по after (keyset), а не обходом всех фильмов.
+ * Массив пользователя меняется под его блокировкой. При загрузке снимка лайки идут по возрастанию ID фильма,
+ * и фильм дописывается в конец массива без сдвига. Индекс заполняют хранилище фильмов (при загрузке снимка
+ * и повторе журнала) и хранилище лайков.
+ */
+@Component
+@Profile({"inmemory", "eventlog"})
+public class LikedFilmsIndex {
+
+    private final Map<Long, UserLikedFilms> likedFilmsByUserId = new ConcurrentHashMap<>();
+
+    public void add(long userId, long filmId) {
+        likedFilmsByUserId.computeIfAbsent(userId, id -> new UserLikedFilms()).add(filmId);
+    }
+
+    public void remove(long userId, long filmId) {
+        UserLikedFilms likedFilms = likedFilmsByUserId.get(userId);
+        if (likedFilms != null) {
+            likedFilms.remove(filmId);
+        }
+    }
+
+    /**
+     * Не более limit ID фильмов, лайкнутых пользователем, больших after, по возрастанию.
+     */
+    public List<Long> getPage(long userId, long after, int limit) {
+        UserLikedFilms likedFilms = likedFilmsByUserId.get(userId);
+        return (likedFilms != null) ? likedFilms.getPage(after, limit) : new ArrayList<>();
+    }
+
+    private static final class UserLikedFilms {
+
+        private long[] filmIds = new long[4];
+        private int size;
+
+        synchronized void add(long filmId) {
+            // Чаще всего фильм больше всех уже добавленных, тогда он дописывается в конец без поиска
+            int position = ((size > 0) && (filmIds[size - 1] < filmId))
+                    ? -(size + 1)
+                    : Arrays.binarySearch(filmIds, 0, size, filmId);
+            if (position >= 0) {
+                return;
+            }
+            int insertAt = -(position + 1);
+            if (size == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+            }
+            System.arraycopy(filmIds, insertAt, filmIds, insertAt + 1, size - insertAt);
+            filmIds[insertAt] = filmId;
+            size++;
+        }
+
+        synchronized void remove(long filmId) {
+            int position = Arrays.binarySearch(filmIds, 0, size, filmId);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(filmIds, position + 1, filmIds, position, size - position - 1);
+            size--;
+        }
+
+        synchronized List<Long> getPage(long after, int limit) {
+            int position = Arrays.binarySearch(filmIds, 0, size, after);
+            int from = (position >= 0) ? position + 1 : -(position + 1);
+            int to = (int) Math.min((long) from + limit, size);
+
+            List<Long> page = new ArrayList<>(Math.max(to - from, 0));
+            for (int i = from; i < to; i++) {
+                page.add(filmIds[i]);
+            }
+            return page;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Отложенная запись счетчика FILM.LikesCount.
+ * <p>
+ * Строки FilmLikes пишутся сразу, а изменения счетчика накапливаются в памяти (по одному значению на фильм
+ * в {@link ConcurrentHashMap}: лайки разных фильмов не мешают друг другу, лайки одного фильма лишь на
+ * мгновение занимают его ячейку карты вместо блокировки строки FILM) и периодически сбрасываются в базу
+ * одним batch-запросом: по одному UPDATE на каждый измененный фильм. Полностью сброшенные фильмы
+ * удаляются из буфера, поэтому его размер ограничен числом фильмов, измененных между сбросами.
+ * При остановке приложения накопленные изменения сбрасываются полностью, с одной повторной попыткой.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory & !eventlog")
+public class LikesCountBuffer {
+
+    private final String FLUSH_LIKES_COUNT_QUERY = "UPDATE FILM SET LikesCount = GREATEST(LikesCount + ?, 0) WHERE Film_ID = ?;";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, Long> pendingByFilmId = new ConcurrentHashMap<>();
+
+    public LikesCountBuffer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void add(Long filmId, int delta) {
+        pendingByFilmId.merge(filmId, (long) delta, (pending, added) -> (pending + added == 0) ? null : pending + added);
+    }
+
+    /**
+     * Изменение счетчика, еще не записанное в базу.
+     */
+    public long getPending(Long filmId) {
+        return pendingByFilmId.getOrDefault(filmId, 0L);
+    }
+
+    /**
+     * Выполняет action так, что сброс буфера не происходит параллельно с ним: пока сброс записал изменение
+     * в базу, но еще не вычел его из буфера, сумма LikesCount и {@link #getPending} учитывает его дважды.
+     */
+    public synchronized <T> T callWithoutFlush(Supplier<T> action) {
+        return action.get();
+    }
+
+    /**
+     * Записывает накопленные изменения в базу. Возвращает false, если запись не удалась:
+     * изменения тогда остаются в буфере до следующего сброса.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.likes.flush-interval-ms:1000}")
+    public synchronized boolean flush() {
+        List<Long> filmIds = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+
+        for (Map.Entry<Long, Long> entry : pendingByFilmId.entrySet()) {
+            long delta = entry.getValue();
+            if (delta != 0) {
+                filmIds.add(entry.getKey());
+                batch.add(new Object[] {delta, entry.getKey()});
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_LIKES_COUNT_QUERY, batch);
+        } catch (DataAccessException e) {
+            // Накопленные изменения остаются в буфере и будут записаны при следующем сбросе
+            log.info("Ошибка при записи счетчиков лайков. Причина: {}", e.getMessage());
+            return false;
+        }
+
+        // Вычитаем ровно то, что записали: лайки, пришедшие во время сброса, остаются в буфере,
+        // а фильмы без оставшихся изменений удаляются из него
+        for (int i = 0; i < filmIds.size(); i++) {
+            long flushed = (long) batch.get(i)[0];
+            pendingByFilmId.compute(filmIds.get(i), (id, pending) -> {
+                long rest = ((pending != null) ? pending : 0L) - flushed;
+                return (rest != 0) ? rest : null;
+            });
+        }
+        log.debug("Записаны счетчики лайков для {} фильмов", filmIds.size());
+        return true;
+    }
+
+    /**
+     * Сброс перед остановкой: при ошибке повторяется один раз, после второй ошибки изменения теряются,
+     * и в лог пишется, каким фильмам и на сколько они не записаны. Расхождение исправит сверка счетчиков.
+     */
+    @PreDestroy
+    public void drain() {
+        if (flush() || flush()) {
+            log.info("Буфер счетчиков лайков сброшен перед остановкой");
+            return;
+        }
+        log.warn("Буфер счетчиков лайков не сброшен перед остановкой, потеряны изменения LikesCount "
+                + "(ID фильма = изменение): {}", pendingByFilmId);
+    }
+}
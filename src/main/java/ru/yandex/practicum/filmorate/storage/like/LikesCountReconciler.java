@@ -0,0 +1,326 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.event.LikesCountCorrectedEvent;
+import ru.yandex.practicum.filmorate.model.like.LikesCountReconciliation;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновая сверка счетчиков FILM.LikesCount с таблицей FilmLikes.
+ * <p>
+ * Счетчик может разойтись с таблицей: его перезаписывает обновление фильма, меняют запросы в обход хранилищ,
+ * изменения из {@link LikesCountBuffer} теряются при аварийной остановке. Сверка идет по диапазонам Film_ID
+ * по {@code chunk-size} фильмов: несколько потоков берут следующий диапазон из общего курсора, для диапазона
+ * одним запросом читаются сохраненные счетчики и количество строк FilmLikes (по индексу Film_ID, User_ID).
+ * Фильм считается расходящимся, если сохраненный счетчик вместе с еще не сброшенными изменениями буфера
+ * не равен количеству строк.
+ * <p>
+ * Расходящиеся фильмы диапазона перепроверяются и исправляются в одной короткой транзакции, пока сброс буфера
+ * приостановлен. Если за время перепроверки у фильма появились новые изменения в буфере, фильм пропускается
+ * до следующей сверки. Счетчик обновляется сравнением с прочитанным значением, так что параллельная запись
+ * не затирается. После каждого диапазона поток спит {@code throttle-factor} от времени его обработки,
+ * чтобы сверка не забирала соединения и процессор у запросов пользователей.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory & !eventlog")
+public class LikesCountReconciler {
+
+    private final String SELECT_FILM_ID_RANGE_QUERY = "SELECT MIN(Film_ID) AS Min_ID, MAX(Film_ID) AS Max_ID FROM FILM;";
+    private final String SELECT_CHUNK_QUERY = "SELECT f.Film_ID, f.LikesCount, "
+            + "(SELECT COUNT(*) FROM FilmLikes AS l WHERE l.Film_ID = f.Film_ID) AS ActualCount "
+            + "FROM FILM AS f WHERE f.Film_ID >= ? AND f.Film_ID < ?;";
+    private final String CORRECT_LIKES_COUNT_QUERY = "UPDATE FILM SET LikesCount = ? WHERE Film_ID = ? AND LikesCount = ?;";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LikesCountBuffer likesCountBuffer;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Counter filmsCheckedCounter;
+    private final Counter filmsCorrectedCounter;
+    private final DistributionSummary driftSummary;
+    private final Timer reconcileTimer;
+
+    @Value("${filmorate.likes.reconcile.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${filmorate.likes.reconcile.threads:2}")
+    private int threads;
+
+    @Value("${filmorate.likes.reconcile.throttle-factor:1.0}")
+    private double throttleFactor;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(daemonThreads("likes-reconcile"));
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile LikesCountReconciliation.State state = LikesCountReconciliation.State.IDLE;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile long chunksTotal;
+    private final AtomicLong chunksDone = new AtomicLong();
+    private final AtomicLong filmsChecked = new AtomicLong();
+    private final AtomicLong filmsCorrected = new AtomicLong();
+    private final AtomicLong likesDrift = new AtomicLong();
+
+    public LikesCountReconciler(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                LikesCountBuffer likesCountBuffer, ApplicationEventPublisher eventPublisher,
+                                MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.likesCountBuffer = likesCountBuffer;
+        this.eventPublisher = eventPublisher;
+
+        this.filmsCheckedCounter = Counter.builder("filmorate.likes.reconcile.films.checked")
+                .description("Фильмы, счетчик лайков которых проверен сверкой")
+                .register(meterRegistry);
+        this.filmsCorrectedCounter = Counter.builder("filmorate.likes.reconcile.films.corrected")
+                .description("Фильмы, счетчик лайков которых исправлен сверкой")
+                .register(meterRegistry);
+        this.driftSummary = DistributionSummary.builder("filmorate.likes.reconcile.drift")
+                .description("Расхождение счетчика лайков исправленного фильма с таблицей FilmLikes")
+                .baseUnit("likes")
+                .register(meterRegistry);
+        this.reconcileTimer = Timer.builder("filmorate.likes.reconcile")
+                .description("Время полной сверки счетчиков лайков")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Запускает сверку в фоне. Возвращает false, если сверка уже идет.
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        begin();
+        runner.execute(this::run);
+        return true;
+    }
+
+    /**
+     * Сверка в текущем потоке. Возвращает false, если сверка уже идет.
+     */
+    public boolean reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        begin();
+        run();
+        return true;
+    }
+
+    /**
+     * Плановая сверка запускается в фоне: поток планировщика один на все задачи, и долгая сверка в нем
+     * остановила бы сброс {@link LikesCountBuffer}.
+     */
+    @Scheduled(initialDelayString = "${filmorate.likes.reconcile.interval-ms:3600000}",
+            fixedDelayString = "${filmorate.likes.reconcile.interval-ms:3600000}")
+    public void scheduledReconcile() {
+        if (!start()) {
+            log.info("Плановая сверка счетчиков лайков пропущена: предыдущая сверка еще идет");
+        }
+    }
+
+    public LikesCountReconciliation getStatus() {
+        return LikesCountReconciliation.builder()
+                .state(state)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .chunksTotal(chunksTotal)
+                .chunksDone(chunksDone.get())
+                .filmsChecked(filmsChecked.get())
+                .filmsCorrected(filmsCorrected.get())
+                .likesDrift(likesDrift.get())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    private void begin() {
+        startedAt = Instant.now();
+        finishedAt = null;
+        chunksTotal = 0;
+        chunksDone.set(0);
+        filmsChecked.set(0);
+        filmsCorrected.set(0);
+        likesDrift.set(0);
+        state = LikesCountReconciliation.State.RUNNING;
+    }
+
+    private void run() {
+        ExecutorService workers = null;
+        try {
+            // Чем меньше изменений ждет в буфере, тем меньше фильмов придется пропустить
+            likesCountBuffer.flush();
+
+            // У пустой таблицы MIN и MAX равны NULL, getLong вернет 0 и 0: одна пачка по пустому диапазону
+            long[] filmIdRange = jdbcTemplate.queryForObject(SELECT_FILM_ID_RANGE_QUERY,
+                    (rs, rowNum) -> new long[] {rs.getLong("Min_ID"), rs.getLong("Max_ID")});
+            long minId = filmIdRange[0];
+            long maxId = filmIdRange[1];
+            chunksTotal = (maxId - minId) / chunkSize + 1;
+
+            AtomicLong cursor = new AtomicLong(minId);
+            workers = Executors.newFixedThreadPool(threads, daemonThreads("likes-reconcile-worker"));
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(workers.submit(() -> reconcileChunks(cursor, maxId)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            state = LikesCountReconciliation.State.FINISHED;
+            log.info("Сверка счетчиков лайков завершена. Проверено фильмов: {}, исправлено: {}, расхождение: {}",
+                    filmsChecked.get(), filmsCorrected.get(), likesDrift.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = LikesCountReconciliation.State.FAILED;
+            log.info("Сверка счетчиков лайков прервана");
+        } catch (ExecutionException | DataAccessException e) {
+            state = LikesCountReconciliation.State.FAILED;
+            Throwable cause = (e instanceof ExecutionException) ? e.getCause() : e;
+            log.info("Ошибка сверки счетчиков лайков. Причина: {}", cause.getMessage());
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+            finishedAt = Instant.now();
+            reconcileTimer.record(finishedAt.toEpochMilli() - startedAt.toEpochMilli(), TimeUnit.MILLISECONDS);
+            running.set(false);
+        }
+    }
+
+    private void reconcileChunks(AtomicLong cursor, long maxId) {
+        long fromId;
+        while ((fromId = cursor.getAndAdd(chunkSize)) <= maxId) {
+            long chunkStartedAt = System.nanoTime();
+            reconcileChunk(fromId, fromId + chunkSize);
+            chunksDone.incrementAndGet();
+
+            long pauseNanos = (long) ((System.nanoTime() - chunkStartedAt) * throttleFactor);
+            try {
+                TimeUnit.NANOSECONDS.sleep(pauseNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void reconcileChunk(long fromId, long toId) {
+        Map<Long, long[]> counts = selectChunk(fromId, toId);
+        filmsChecked.addAndGet(counts.size());
+        filmsCheckedCounter.increment(counts.size());
+
+        List<Long> candidates = new ArrayList<>();
+        counts.forEach((filmId, count) -> {
+            if (count[0] + likesCountBuffer.getPending(filmId) != count[1]) {
+                candidates.add(filmId);
+            }
+        });
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        List<long[]> corrections = likesCountBuffer.callWithoutFlush(() ->
+                transactionTemplate.execute(status -> correctChunk(fromId, toId, candidates)));
+
+        for (long[] correction : corrections) {
+            long drift = Math.abs(correction[1] - correction[2]);
+            filmsCorrected.incrementAndGet();
+            likesDrift.addAndGet(drift);
+            filmsCorrectedCounter.increment();
+            driftSummary.record(drift);
+            log.info("Исправлен счетчик лайков фильма ID = {}: было {}, стало {}", correction[0], correction[1], correction[2]);
+            eventPublisher.publishEvent(new LikesCountCorrectedEvent(correction[0], (int) correction[3]));
+        }
+    }
+
+    /**
+     * Перепроверяет кандидатов и исправляет сохраненный счетчик. Возвращает исправления:
+     * ID фильма, прежний счетчик, новый счетчик, количество лайков с учетом буфера.
+     */
+    private List<long[]> correctChunk(long fromId, long toId, List<Long> candidates) {
+        Map<Long, Long> pendingBefore = new HashMap<>();
+        candidates.forEach(filmId -> pendingBefore.put(filmId, likesCountBuffer.getPending(filmId)));
+
+        Map<Long, long[]> counts = selectChunk(fromId, toId);
+
+        List<long[]> corrections = new ArrayList<>();
+        for (Long filmId : candidates) {
+            long[] count = counts.get(filmId);
+            long pending = pendingBefore.get(filmId);
+            if ((count == null) || (likesCountBuffer.getPending(filmId) != pending)) {
+                continue;
+            }
+
+            long expected = count[1] - pending;
+            if ((count[0] != expected) && (expected >= 0)) {
+                corrections.add(new long[] {filmId, count[0], expected, count[1]});
+            }
+        }
+
+        List<Object[]> batch = new ArrayList<>();
+        corrections.forEach(correction -> batch.add(new Object[] {correction[2], correction[0], correction[1]}));
+        int[] updated = jdbcTemplate.batchUpdate(CORRECT_LIKES_COUNT_QUERY, batch);
+
+        List<long[]> applied = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] > 0) {
+                applied.add(corrections.get(i));
+            }
+        }
+        return applied;
+    }
+
+    // ID фильма -> {сохраненный LikesCount, количество строк FilmLikes}
+    private Map<Long, long[]> selectChunk(long fromId, long toId) {
+        Map<Long, long[]> counts = new HashMap<>();
+        jdbcTemplate.query(SELECT_CHUNK_QUERY, rs -> {
+            counts.put(rs.getLong("Film_ID"), new long[] {rs.getLong("LikesCount"), rs.getLong("ActualCount")});
+        }, fromId, toId);
+        return counts;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger number = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
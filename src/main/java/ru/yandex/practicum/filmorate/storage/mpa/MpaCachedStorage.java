@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage.mpa;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
+import ru.yandex.practicum.filmorate.model.mpa.MPA;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Справочник рейтингов MPA в памяти. Таблица MPA заполняется один раз из data.sql,
+ * поэтому при старте она целиком читается в массив, индексированный по Mpa_Id,
+ * и дальше запросы к базе не выполняются. Перечитать справочник можно через {@link #refresh()}.
+ */
+@Slf4j
+@Component("mpaCachedStorage")
+public class MpaCachedStorage implements MpaStorage {
+
+    @Autowired
+    @Qualifier("mpaDbStorage")
+    private MpaStorage mpaStorage;
+
+    private volatile MPA[] mpaById = new MPA[0];
+
+    @PostConstruct
+    public void refresh() {
+        List<MPA> mpaList = mpaStorage.getMpaList();
+
+        MPA[] byId = new MPA[mpaList.stream().mapToInt(MPA::getId).max().orElse(0) + 1];
+        for (MPA mpa : mpaList) {
+            byId[mpa.getId()] = mpa;
+        }
+
+        mpaById = byId;
+        log.info("Справочник рейтингов MPA загружен. Количество записей: {}", mpaList.size());
+    }
+
+    @Override
+    public List<MPA> getMpaList() {
+        List<MPA> mpaList = new ArrayList<>();
+        for (MPA mpa : mpaById) {
+            if (Objects.nonNull(mpa)) {
+                mpaList.add(mpa);
+            }
+        }
+        return mpaList;
+    }
+
+    @Override
+    public MPA getMpa(Long mpaId) {
+        if (mpaId <= 0) {
+            log.info("mpaRatingIndex <= 0");
+            return null;
+        }
+
+        MPA[] byId = mpaById;
+        if ((mpaId >= byId.length) || Objects.isNull(byId[mpaId.intValue()])) {
+            log.info("Ошибка при чтении данных рейтинга MPA. Рейтинг с ID = {} не найден", mpaId);
+            throw new FilmorateNotFoundException("Ошибка при чтении данных рейтинга MPA");
+        }
+        return byId[mpaId.intValue()];
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+/**
+ * Двоичный снимок хранилищ в памяти (профили inmemory и eventlog).
+ * <p>
+ * Все числа - little-endian. Данные лежат по колонкам: сначала все ID, затем все значения следующего поля
+ * и так далее, так что колонка читается одним массовым копированием или обходом представления
+ * {@link java.nio.LongBuffer} над отображенным в память файлом.
+ * <pre>
+ * заголовок: int MAGIC, int VERSION, long время создания (мс), long позиция журнала изменений
+ * фильмы:    int n, long[n] ID, int[n] ID рейтинга MPA (0 - нет), long[n] дата выпуска (день эпохи),
+ *            int[n] продолжительность, int[n + 1] смещения жанров, int[...] ID жанров,
+ *            строки названий, строки описаний
+ * пользователи: int n, long[n] ID, long[n] дата рождения (день эпохи), строки email, логинов, имен
+ * лайки:     блоки до {@value #BLOCK_SIZE} записей: int k, long[k] ID фильма, long[k] ID пользователя,
+ *            long[k] время лайка (мс); блок с k = 0 завершает раздел
+ * друзья:    блоки: int k, long[k] ID пользователя, long[k] ID друга; блок с k = 0 завершает раздел
+ * </pre>
+ * Колонка строк - int[n] длин в байтах UTF-8 (-1 для null), затем байты всех строк подряд.
+ * Отсутствующие значения чисел кодируются как {@link #NULL_INT} и {@link #NULL_LONG}.
+ * Лайки и друзья пишутся блоками, чтобы при записи не собирать в памяти колонки на все лайки сразу.
+ * <p>
+ * Позиция журнала есть только в версии 2: с нее начинается повтор журнала после загрузки снимка
+ * (см. {@link ru.yandex.practicum.filmorate.storage.eventlog.EventLog}). Снимки версии 1 читаются с позицией 0.
+ */
+final class SnapshotFormat {
+
+    static final int MAGIC = 0x464D5353;
+    static final int VERSION = 2;
+    static final int VERSION_WITHOUT_LOG_POSITION = 1;
+
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    static final int NULL_INT = Integer.MIN_VALUE;
+    static final long NULL_LONG = Long.MIN_VALUE;
+
+    private SnapshotFormat() {
+    }
+}
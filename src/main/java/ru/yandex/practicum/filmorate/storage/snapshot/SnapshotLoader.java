@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Снимок, с которого стартуют хранилища в памяти.
+ * <p>
+ * Хранилища читают свои разделы сами в {@code @PostConstruct}: так данные оказываются в хранилище раньше,
+ * чем его получат индексы в памяти ({@link ru.yandex.practicum.filmorate.service.FilmLeaderboard} и другие),
+ * и индексы строятся уже по загруженным данным. Файл открывается при первом обращении и освобождается
+ * после запуска контекста. Если снимка нет или он поврежден, хранилища стартуют пустыми.
+ * В профиле eventlog снимок служит контрольной точкой журнала изменений.
+ */
+@Slf4j
+@Component
+@Profile({"inmemory", "eventlog"})
+public class SnapshotLoader {
+
+    @Autowired
+    @Qualifier("genreCachedStorage")
+    private GenreStorage genreStorage;
+
+    @Autowired
+    @Qualifier("mpaCachedStorage")
+    private MpaStorage mpaStorage;
+
+    @Value("${filmorate.snapshot.enabled:false}")
+    private boolean enabled;
+
+    @Value("${filmorate.snapshot.path:./db/filmorate.snapshot}")
+    private String path;
+
+    private SnapshotReader reader;
+    private boolean opened;
+
+    public void forEachFilm(Consumer<Film> action) {
+        SnapshotReader snapshot = getReader();
+        if (snapshot != null) {
+            snapshot.forEachFilm(mpaId -> mpaStorage.getMpa((long) mpaId),
+                    genreId -> genreStorage.getGenre((long) genreId), action);
+        }
+    }
+
+    public void forEachUser(Consumer<User> action) {
+        SnapshotReader snapshot = getReader();
+        if (snapshot != null) {
+            snapshot.forEachUser(action);
+        }
+    }
+
+    public void forEachFilmLikes(SnapshotReader.FilmLikesVisitor visitor) {
+        SnapshotReader snapshot = getReader();
+        if (snapshot != null) {
+            snapshot.forEachFilmLikes(visitor);
+        }
+    }
+
+    public void forEachFriendship(BiConsumer<Long, Long> action) {
+        SnapshotReader snapshot = getReader();
+        if (snapshot != null) {
+            snapshot.forEachFriendship(action);
+        }
+    }
+
+    /**
+     * Позиция журнала изменений, записанная в снимке, или 0, если снимка нет.
+     */
+    public long getLogPosition() {
+        SnapshotReader snapshot = getReader();
+        return (snapshot != null) ? snapshot.getLogPosition() : 0L;
+    }
+
+    @EventListener
+    public synchronized void onContextRefreshed(ContextRefreshedEvent event) {
+        reader = null;
+    }
+
+    private synchronized SnapshotReader getReader() {
+        if (opened) {
+            return reader;
+        }
+        opened = true;
+
+        Path snapshotPath = Paths.get(path);
+        if (!enabled || !Files.exists(snapshotPath)) {
+            return null;
+        }
+
+        try {
+            reader = SnapshotReader.open(snapshotPath);
+            log.info("Хранилища в памяти загружаются из снимка {} ({} байт)", snapshotPath, Files.size(snapshotPath));
+        } catch (IOException e) {
+            log.info("Снимок {} не загружен, хранилища стартуют пустыми. Причина: {}", snapshotPath, e.getMessage());
+        }
+        return reader;
+    }
+}
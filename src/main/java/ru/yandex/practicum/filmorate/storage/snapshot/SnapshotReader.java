@@ -0,0 +1,300 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.genre.Genre;
+import ru.yandex.practicum.filmorate.model.mpa.MPA;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import static ru.yandex.practicum.filmorate.storage.snapshot.SnapshotFormat.*;
+
+/**
+ * Чтение снимка в формате {@link SnapshotFormat} из файла, отображенного в память.
+ * <p>
+ * При открытии проверяется заголовок и запоминаются начала разделов, поэтому каждый раздел можно обойти
+ * отдельно и несколько раз. Колонки лайков и друзей читаются через представления {@link LongBuffer}
+ * прямо из отображения, без копирования в массивы и без объектов на каждую запись.
+ * Размер файла ограничен 2 ГБ (одно отображение).
+ */
+public class SnapshotReader {
+
+    /**
+     * Лайк из снимка: ID фильма, ID пользователя и время лайка в миллисекундах.
+     */
+    @FunctionalInterface
+    public interface LikeVisitor {
+        void visit(long filmId, long userId, long likedAtMillis);
+    }
+
+    /**
+     * Лайки одного фильма, идущие в блоке снимка подряд: позиции [from, to) колонок userIds и likedAt.
+     */
+    @FunctionalInterface
+    public interface FilmLikesVisitor {
+        void visit(long filmId, LongBuffer userIds, LongBuffer likedAt, int from, int to);
+    }
+
+    private final ByteBuffer buffer;
+    private final long createdAtMillis;
+    private final long logPosition;
+    private final int filmsPosition;
+    private final int usersPosition;
+    private final int likesPosition;
+    private final int friendshipsPosition;
+
+    private SnapshotReader(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Неизвестный формат снимка");
+            }
+            int version = buffer.getInt();
+            if ((version != VERSION) && (version != VERSION_WITHOUT_LOG_POSITION)) {
+                throw new IOException("Неизвестная версия снимка: " + version);
+            }
+            createdAtMillis = buffer.getLong();
+            logPosition = (version == VERSION) ? buffer.getLong() : 0L;
+
+            filmsPosition = buffer.position();
+            skipFilms();
+            usersPosition = buffer.position();
+            skipUsers();
+            likesPosition = buffer.position();
+            skipBlocks(3);
+            friendshipsPosition = buffer.position();
+            skipBlocks(2);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Снимок поврежден или записан не полностью", e);
+        }
+    }
+
+    public static SnapshotReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SnapshotReader(mapped.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    /**
+     * Позиция журнала изменений, с которой нужно повторять журнал после загрузки снимка.
+     */
+    public long getLogPosition() {
+        return logPosition;
+    }
+
+    /**
+     * Фильмы без лайков. Рейтинг и жанры заполняются по ID через mpaById и genreById.
+     */
+    public void forEachFilm(IntFunction<MPA> mpaById, IntFunction<Genre> genreById, Consumer<Film> action) {
+        ByteBuffer in = at(filmsPosition);
+        int count = in.getInt();
+
+        long[] ids = getLongs(in, count);
+        int[] mpaIds = getInts(in, count);
+        long[] releaseDates = getLongs(in, count);
+        int[] durations = getInts(in, count);
+        int[] genreOffsets = getInts(in, count + 1);
+        int[] genreIds = getInts(in, genreOffsets[count]);
+        String[] names = getStrings(in, count);
+        String[] descriptions = getStrings(in, count);
+
+        for (int i = 0; i < count; i++) {
+            List<Genre> genres = new ArrayList<>(genreOffsets[i + 1] - genreOffsets[i]);
+            for (int g = genreOffsets[i]; g < genreOffsets[i + 1]; g++) {
+                genres.add(genreById.apply(genreIds[g]));
+            }
+
+            action.accept(Film.builder()
+                    .id(ids[i])
+                    .name(names[i])
+                    .description(descriptions[i])
+                    .genres(genres)
+                    .mpa((mpaIds[i] > 0) ? mpaById.apply(mpaIds[i]) : null)
+                    .releaseDate(toDate(releaseDates[i]))
+                    .duration((durations[i] != NULL_INT) ? durations[i] : null)
+                    .likesCount(0)
+                    .likesList(new HashSet<>())
+                    .build());
+        }
+    }
+
+    /**
+     * Пользователи без друзей.
+     */
+    public void forEachUser(Consumer<User> action) {
+        ByteBuffer in = at(usersPosition);
+        int count = in.getInt();
+
+        long[] ids = getLongs(in, count);
+        long[] birthdays = getLongs(in, count);
+        String[] emails = getStrings(in, count);
+        String[] logins = getStrings(in, count);
+        String[] names = getStrings(in, count);
+
+        for (int i = 0; i < count; i++) {
+            action.accept(User.builder()
+                    .id(ids[i])
+                    .email(emails[i])
+                    .login(logins[i])
+                    .name(names[i])
+                    .birthday(toDate(birthdays[i]))
+                    .friends(new HashSet<>())
+                    .build());
+        }
+    }
+
+    public void forEachLike(LikeVisitor visitor) {
+        ByteBuffer in = at(likesPosition);
+        int count;
+        while ((count = in.getInt()) > 0) {
+            LongBuffer filmIds = longColumn(in, count);
+            LongBuffer userIds = longColumn(in, count);
+            LongBuffer likedAt = longColumn(in, count);
+            for (int i = 0; i < count; i++) {
+                visitor.visit(filmIds.get(i), userIds.get(i), likedAt.get(i));
+            }
+        }
+    }
+
+    /**
+     * Лайки группами по фильму. Снимок пишется обходом фильмов, поэтому лайки фильма лежат подряд и группа
+     * обычно одна на фильм (кроме фильмов на границе блоков): по ее размеру можно сразу выделить место.
+     */
+    public void forEachFilmLikes(FilmLikesVisitor visitor) {
+        ByteBuffer in = at(likesPosition);
+        int count;
+        while ((count = in.getInt()) > 0) {
+            LongBuffer filmIds = longColumn(in, count);
+            LongBuffer userIds = longColumn(in, count);
+            LongBuffer likedAt = longColumn(in, count);
+
+            int from = 0;
+            for (int i = 1; i <= count; i++) {
+                if ((i == count) || (filmIds.get(i) != filmIds.get(from))) {
+                    visitor.visit(filmIds.get(from), userIds, likedAt, from, i);
+                    from = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Пары (ID пользователя, ID друга).
+     */
+    public void forEachFriendship(BiConsumer<Long, Long> action) {
+        ByteBuffer in = at(friendshipsPosition);
+        int count;
+        while ((count = in.getInt()) > 0) {
+            LongBuffer userIds = longColumn(in, count);
+            LongBuffer friendIds = longColumn(in, count);
+            for (int i = 0; i < count; i++) {
+                action.accept(userIds.get(i), friendIds.get(i));
+            }
+        }
+    }
+
+    private void skipFilms() {
+        int count = buffer.getInt();
+        skip(buffer, (long) count * (Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES));
+        int[] genreOffsets = getInts(buffer, count + 1);
+        skip(buffer, (long) genreOffsets[count] * Integer.BYTES);
+        skipStrings(buffer, count);
+        skipStrings(buffer, count);
+    }
+
+    private void skipUsers() {
+        int count = buffer.getInt();
+        skip(buffer, (long) count * (Long.BYTES + Long.BYTES));
+        skipStrings(buffer, count);
+        skipStrings(buffer, count);
+        skipStrings(buffer, count);
+    }
+
+    private void skipBlocks(int columns) {
+        int count;
+        while ((count = buffer.getInt()) > 0) {
+            skip(buffer, (long) count * columns * Long.BYTES);
+        }
+    }
+
+    private void skipStrings(ByteBuffer in, int count) {
+        long bytes = 0;
+        for (int length : getInts(in, count)) {
+            bytes += Math.max(length, 0);
+        }
+        skip(in, bytes);
+    }
+
+    private static void skip(ByteBuffer in, long bytes) {
+        if (bytes > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        in.position(in.position() + (int) bytes);
+    }
+
+    private ByteBuffer at(int position) {
+        return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(position);
+    }
+
+    private static LongBuffer longColumn(ByteBuffer in, int count) {
+        LongBuffer column = in.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        column.limit(count);
+        skip(in, (long) count * Long.BYTES);
+        return column;
+    }
+
+    private static long[] getLongs(ByteBuffer in, int count) {
+        long[] values = new long[count];
+        longColumn(in, count).get(values);
+        return values;
+    }
+
+    private static int[] getInts(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values);
+        skip(in, (long) count * Integer.BYTES);
+        return values;
+    }
+
+    private static String[] getStrings(ByteBuffer in, int count) {
+        int[] lengths = getInts(in, count);
+        String[] values = new String[count];
+        byte[] bytes = new byte[0];
+        for (int i = 0; i < count; i++) {
+            if (lengths[i] < 0) {
+                continue;
+            }
+            if (bytes.length < lengths[i]) {
+                bytes = new byte[lengths[i]];
+            }
+            in.get(bytes, 0, lengths[i]);
+            values[i] = new String(bytes, 0, lengths[i], StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    private static LocalDate toDate(long epochDay) {
+        return (epochDay != NULL_LONG) ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+}
@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikeTimes;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Периодическая запись снимка хранилищ в памяти и запись при остановке приложения.
+ * <p>
+ * Снимок пишется во временный файл рядом с основным и заменяет его переименованием, так что при сбое
+ * во время записи остается предыдущий снимок. Хранилища во время записи не блокируются: лайки и друзья,
+ * изменившиеся во время обхода, могут попасть в снимок частично.
+ * <p>
+ * В профиле eventlog снимок по расписанию не пишется (filmorate.snapshot.auto-save=false): его пишет
+ * {@link ru.yandex.practicum.filmorate.storage.eventlog.EventLogCheckpointer} вместе с позицией журнала.
+ */
+@Slf4j
+@Component
+@Profile({"inmemory", "eventlog"})
+public class SnapshotSaver {
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Autowired
+    private LikeTimes likeTimes;
+
+    @Value("${filmorate.snapshot.enabled:false}")
+    private boolean enabled;
+
+    @Value("${filmorate.snapshot.path:./db/filmorate.snapshot}")
+    private String path;
+
+    @Value("${filmorate.snapshot.auto-save:true}")
+    private boolean autoSave;
+
+    @Scheduled(initialDelayString = "${filmorate.snapshot.interval-ms:300000}",
+            fixedDelayString = "${filmorate.snapshot.interval-ms:300000}")
+    public void scheduledSave() {
+        if (enabled && autoSave) {
+            save();
+        }
+    }
+
+    @PreDestroy
+    public void saveOnShutdown() {
+        if (enabled && autoSave) {
+            save();
+        }
+    }
+
+    public synchronized void save() {
+        save(Paths.get(path));
+    }
+
+    public synchronized void save(Path snapshotPath) {
+        save(snapshotPath, 0L);
+    }
+
+    /**
+     * Запись снимка с позицией журнала изменений, с которой журнал повторяется после загрузки снимка.
+     * Возвращает false, если снимок записать не удалось и прежний снимок остался на месте.
+     */
+    public synchronized boolean save(Path snapshotPath, long logPosition) {
+        long startedAt = System.currentTimeMillis();
+        try {
+            Path directory = snapshotPath.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tempPath = Files.createTempFile(directory, snapshotPath.getFileName().toString(), ".tmp");
+
+            long[] counts;
+            try {
+                counts = write(tempPath, logPosition);
+                Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+
+            log.info("Снимок хранилищ записан в {} за {} мс. Фильмов: {}, пользователей: {}, лайков: {}, друзей: {}",
+                    snapshotPath, System.currentTimeMillis() - startedAt, counts[0], counts[1], counts[2], counts[3]);
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            log.info("Ошибка записи снимка хранилищ в {}. Причина: {}", snapshotPath, e.getMessage());
+            return false;
+        }
+    }
+
+    private long[] write(Path tempPath, long logPosition) throws IOException {
+        List<Film> films = new ArrayList<>();
+        filmStorage.forEachFilm(films::add);
+        List<User> users = new ArrayList<>();
+        userStorage.forEachUser(users::add);
+
+        long likesCount = 0;
+        long friendshipsCount = 0;
+        try (SnapshotWriter writer = new SnapshotWriter(tempPath, logPosition)) {
+            writer.writeFilms(films);
+            writer.writeUsers(users);
+
+            for (Film film : films) {
+                for (Long userId : film.getLikesList()) {
+                    // Время может еще не быть записано у лайка, поставленного во время обхода
+                    long likedAt = likeTimes.get(film.getId(), userId);
+                    writer.addLike(film.getId(), userId, (likedAt != LikeTimes.NO_TIME) ? likedAt : System.currentTimeMillis());
+                    likesCount++;
+                }
+            }
+            writer.endLikes();
+
+            for (User user : users) {
+                for (Long friendId : user.getFriends()) {
+                    writer.addFriendship(user.getId(), friendId);
+                    friendshipsCount++;
+                }
+            }
+            writer.endFriendships();
+        }
+        return new long[] {films.size(), users.size(), likesCount, friendshipsCount};
+    }
+}
@@ -0,0 +1,205 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.genre.Genre;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static ru.yandex.practicum.filmorate.storage.snapshot.SnapshotFormat.*;
+
+/**
+ * Последовательная запись снимка в формате {@link SnapshotFormat} через буфер фиксированного размера.
+ * Разделы пишутся строго по порядку: {@link #writeFilms}, {@link #writeUsers}, лайки через {@link #addLike}
+ * и {@link #endLikes}, друзья через {@link #addFriendship} и {@link #endFriendships}.
+ */
+public class SnapshotWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final long[][] block = new long[3][BLOCK_SIZE];
+    private int blockSize;
+
+    public SnapshotWriter(Path path) throws IOException {
+        this(path, 0L);
+    }
+
+    /**
+     * @param logPosition позиция журнала изменений, с которой нужно повторять журнал после загрузки снимка
+     */
+    public SnapshotWriter(Path path, long logPosition) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        putInt(MAGIC);
+        putInt(VERSION);
+        putLong(System.currentTimeMillis());
+        putLong(logPosition);
+    }
+
+    public void writeFilms(List<Film> films) throws IOException {
+        putInt(films.size());
+        for (Film film : films) {
+            putLong(film.getId());
+        }
+        for (Film film : films) {
+            putInt(((film.getMpa() != null) && (film.getMpa().getId() != null)) ? film.getMpa().getId() : 0);
+        }
+        for (Film film : films) {
+            putLong(toEpochDay(film.getReleaseDate()));
+        }
+        for (Film film : films) {
+            putInt((film.getDuration() != null) ? film.getDuration() : NULL_INT);
+        }
+
+        List<Integer> genreIds = new ArrayList<>();
+        putInt(0);
+        for (Film film : films) {
+            if (film.getGenres() != null) {
+                film.getGenres().stream()
+                        .map(Genre::getId)
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .forEach(genreIds::add);
+            }
+            putInt(genreIds.size());
+        }
+        for (Integer genreId : genreIds) {
+            putInt(genreId);
+        }
+
+        putStrings(films, Film::getName);
+        putStrings(films, Film::getDescription);
+    }
+
+    public void writeUsers(List<User> users) throws IOException {
+        putInt(users.size());
+        for (User user : users) {
+            putLong(user.getId());
+        }
+        for (User user : users) {
+            putLong(toEpochDay(user.getBirthday()));
+        }
+
+        putStrings(users, User::getEmail);
+        putStrings(users, User::getLogin);
+        putStrings(users, User::getName);
+    }
+
+    public void addLike(long filmId, long userId, long likedAtMillis) throws IOException {
+        block[0][blockSize] = filmId;
+        block[1][blockSize] = userId;
+        block[2][blockSize] = likedAtMillis;
+        if (++blockSize == BLOCK_SIZE) {
+            flushBlock(3);
+        }
+    }
+
+    public void endLikes() throws IOException {
+        endBlocks(3);
+    }
+
+    public void addFriendship(long userId, long friendId) throws IOException {
+        block[0][blockSize] = userId;
+        block[1][blockSize] = friendId;
+        if (++blockSize == BLOCK_SIZE) {
+            flushBlock(2);
+        }
+    }
+
+    public void endFriendships() throws IOException {
+        endBlocks(2);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void endBlocks(int columns) throws IOException {
+        if (blockSize > 0) {
+            flushBlock(columns);
+        }
+        putInt(0);
+    }
+
+    private void flushBlock(int columns) throws IOException {
+        putInt(blockSize);
+        for (int column = 0; column < columns; column++) {
+            for (int i = 0; i < blockSize; i++) {
+                putLong(block[column][i]);
+            }
+        }
+        blockSize = 0;
+    }
+
+    private <T> void putStrings(List<T> items, Function<T, String> getter) throws IOException {
+        List<byte[]> values = new ArrayList<>(items.size());
+        for (T item : items) {
+            String value = getter.apply(item);
+            byte[] bytes = (value != null) ? value.getBytes(StandardCharsets.UTF_8) : null;
+            values.add(bytes);
+            putInt((bytes != null) ? bytes.length : -1);
+        }
+        for (byte[] bytes : values) {
+            if (bytes != null) {
+                putBytes(bytes);
+            }
+        }
+    }
+
+    private static long toEpochDay(LocalDate date) {
+        return (date != null) ? date.toEpochDay() : NULL_LONG;
+    }
+
+    private void putInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    private void putLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -1,31 +1,122 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateBadRequestException;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.FilmorateSqlException;
+import ru.yandex.practicum.filmorate.model.Fields;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.snapshot.SnapshotLoader;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+/**
+ * Потокобезопасное хранилище пользователей в памяти (профиль inmemory).
+ * <p>
+ * Устроено так же, как {@link ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage}:
+ * атомарный счетчик ID, {@link ConcurrentSkipListMap} по ID и уникальные индексы логина и email
+ * (аналоги unique_User_Login и unique_User_Email). Список друзей - конкурентное множество,
+ * которое при обновлении пользователя переходит к новой версии объекта.
+ * При старте пользователи и друзья загружаются из снимка, если он есть (см. {@link SnapshotLoader}).
+ */
 @Component("inMemoryUserStorage")
+@Profile("inmemory")
 @Slf4j
 public class InMemoryUserStorage implements UserStorage {
 
-    private Long userUID = 0L;
-    private final HashMap<Long, User> users = new HashMap<>();
+    private final AtomicLong userUID = new AtomicLong();
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> userIdsByLogin = new ConcurrentHashMap<>();
+    private final Map<String, Long> userIdsByEmail = new ConcurrentHashMap<>();
+
+    @Autowired
+    private SnapshotLoader snapshotLoader;
+
+    @PostConstruct
+    public void restoreSnapshot() {
+        snapshotLoader.forEachUser(this::restoreUser);
+
+        AtomicLong friendshipsCount = new AtomicLong();
+        snapshotLoader.forEachFriendship((userId, friendId) -> {
+            User user = users.get(userId);
+            if ((user != null) && user.getFriends().add(friendId)) {
+                friendshipsCount.incrementAndGet();
+            }
+        });
+
+        if (!users.isEmpty()) {
+            log.info("Из снимка загружено пользователей: {}, заявок в друзья: {}", users.size(), friendshipsCount);
+        }
+    }
+
+    /**
+     * Восстановление пользователя с известным ID без проверок. Друзья прежней версии пользователя сохраняются,
+     * уникальные индексы и счетчик ID обновляются.
+     */
+    protected void restoreUser(User user) {
+        User oldUser = users.get(user.getId());
+        user.setFriends((oldUser != null) ? oldUser.getFriends() : ConcurrentHashMap.newKeySet());
+        users.put(user.getId(), user);
+
+        if (oldUser != null) {
+            releaseChanged(oldUser, user);
+        }
+        userIdsByLogin.put(user.getLogin(), user.getId());
+        userIdsByEmail.put(user.getEmail(), user.getId());
+        userUID.accumulateAndGet(user.getId(), Math::max);
+    }
 
     @Override
-    public List<User> getUsersList() {
+    public List<User> getUsersList(Fields fields) {
         log.info("Текущее количество пользователей: {}", users.size());
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public List<User> getUsersPage(Long after, Integer limit, Fields fields) {
+        return users.tailMap(after, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void forEachUser(Fields fields, Consumer<User> action) {
+        users.values().forEach(action);
+    }
+
     @Override
     public User createUser(User user) {
-        addUser(user);
-        return user;
+        return createUsers(List.of(user)).get(0);
+    }
+
+    @Override
+    public List<User> createUsers(List<User> users) {
+        // Как и в транзакции БД: при нарушении уникальности не сохраняется ни один пользователь пачки
+        List<User> reserved = new ArrayList<>(users.size());
+        for (User user : users) {
+            user.setId(userUID.incrementAndGet());
+            if (!reserveUnique(user, null)) {
+                reserved.forEach(this::releaseUnique);
+                log.info("Объект: {} не может быть сохранен. Причина 'Логин или email уже используются'", user);
+                throw new FilmorateSqlException("Ошибка при добавлении нового пользователя");
+            }
+            reserved.add(user);
+        }
+
+        for (User user : users) {
+            addUser(user);
+        }
+        return users;
     }
 
     @Override
@@ -42,49 +133,68 @@ public class InMemoryUserStorage implements UserStorage {
             throw new FilmorateBadRequestException("Ошибка обновления объекта. ID должен быть положительным числом");
         }
 
-        User oldUser = users.get(uid);
+        checkUserName(user);
 
-        if (oldUser == null) {
-            log.info("Объект: {} не может быть сохранен. Причина 'Объект с ID = {} не существует'", user, uid);
-            throw new FilmorateNotFoundException("Ошибка обновления объекта. Объект с ID = " + uid + " не существует");
-        }
+        while (true) {
+            User oldUser = users.get(uid);
 
-        log.info("Обновляем объект с ID: {}", uid);
-        log.info("Объект до обновления: {}", oldUser);
+            if (oldUser == null) {
+                log.info("Объект: {} не может быть сохранен. Причина 'Объект с ID = {} не существует'", user, uid);
+                throw new FilmorateNotFoundException("Ошибка обновления объекта. Объект с ID = " + uid + " не существует");
+            }
 
-        checkUserName(user);
-        checkFriendsList(user);
+            if (!reserveUnique(user, oldUser)) {
+                log.info("Объект: {} не может быть сохранен. Причина 'Логин или email уже используются'", user);
+                throw new FilmorateSqlException("Ошибка при обновлении данных пользователя");
+            }
 
-        users.put(user.getId(), user);
+            user.setFriends(oldUser.getFriends());
 
-        log.info("Объект после обновления: {}", users.get(user.getId()));
+            if (users.replace(uid, oldUser, user)) {
+                releaseChanged(oldUser, user);
+                log.info("Обновлен объект с ID: {}. До обновления: {}, после обновления: {}", uid, oldUser, user);
+                return user;
+            }
 
-        return user;
+            // Пользователя успели обновить параллельно: освобождаем занятые значения и повторяем
+            releaseChanged(user, oldUser);
+        }
     }
 
     @Override
-    public User getUser(Long userId) {
+    public User getUser(Long userId, Fields fields) {
         return users.get(userId);
     }
 
     @Override
-    public List<User> getFriendsList(Long userId) {
+    public List<User> getUsersByIds(List<Long> userIds, Fields fields) {
+        return userIds.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> getFriendsList(Long userId, Fields fields) {
         User user = checkUser(userId);
 
-        return users.values().stream()
-                             .filter(c -> user.getFriends().contains(c.getId()))
-                             .collect(Collectors.toList());
+        List<Long> friendIds = new ArrayList<>(user.getFriends());
+        Collections.sort(friendIds);
+        return getUsersByIds(friendIds, fields);
     }
 
     @Override
-    public List<User> getCommonFriendsList(Long userId, Long otherId) {
-        User user_1 = checkUser(userId);
-        User user_2 = checkUser(otherId);
+    public List<User> getCommonFriendsList(Long userId, Long otherId, Fields fields) {
+        Set<Long> friends = checkUser(userId).getFriends();
+        Set<Long> otherFriends = checkUser(otherId).getFriends();
 
-        return users.values().stream()
-                             .filter(c -> user_1.getFriends().contains(c.getId()))
-                             .filter(c -> user_2.getFriends().contains(c.getId()))
-                             .collect(Collectors.toList());
+        Set<Long> smaller = (friends.size() <= otherFriends.size()) ? friends : otherFriends;
+        Set<Long> larger = (smaller == friends) ? otherFriends : friends;
+        List<Long> commonIds = smaller.stream()
+                .filter(larger::contains)
+                .sorted()
+                .collect(Collectors.toList());
+        return getUsersByIds(commonIds, fields);
     }
 
     private User checkUser(Long userId) {
@@ -97,29 +207,67 @@ public class InMemoryUserStorage implements UserStorage {
 
     private void addUser(User user) {
         checkUserName(user);
-        checkFriendsList(user);
 
-        Long uid = getUserUID();
+        Set<Long> friends = ConcurrentHashMap.newKeySet();
+        if (user.getFriends() != null) {
+            friends.addAll(user.getFriends());
+        }
+        user.setFriends(friends);
 
-        user.setId(uid);
-        users.put(user.getId(), user);
+        storeUser(user);
 
         log.info("Сохранен объект: {}", user);
     }
 
-    private void checkUserName(User user) {
-        if ((user.getName() == null) || user.getName().isEmpty() || user.getName().isBlank()) {
-            user.setName(user.getLogin());
+    /**
+     * Размещение нового пользователя, уже получившего ID, логин и email в индексах.
+     */
+    protected void storeUser(User user) {
+        users.put(user.getId(), user);
+    }
+
+    /**
+     * Занимает логин и email пользователя в уникальных индексах. Значения, совпадающие с oldUser,
+     * уже принадлежат этому пользователю. Если одно из значений занято другим пользователем,
+     * уже занятое освобождается и возвращается false.
+     */
+    private boolean reserveUnique(User user, User oldUser) {
+        Long uid = user.getId();
+        boolean loginChanged = (oldUser == null) || !oldUser.getLogin().equals(user.getLogin());
+        boolean emailChanged = (oldUser == null) || !oldUser.getEmail().equals(user.getEmail());
+
+        if (loginChanged && (userIdsByLogin.putIfAbsent(user.getLogin(), uid) != null)) {
+            return false;
+        }
+        if (emailChanged && (userIdsByEmail.putIfAbsent(user.getEmail(), uid) != null)) {
+            if (loginChanged) {
+                userIdsByLogin.remove(user.getLogin(), uid);
+            }
+            return false;
         }
+        return true;
+    }
+
+    private void releaseUnique(User user) {
+        userIdsByLogin.remove(user.getLogin(), user.getId());
+        userIdsByEmail.remove(user.getEmail(), user.getId());
     }
 
-    private void checkFriendsList(User user) {
-        if (user.getFriends() == null) {
-            user.setFriends(new HashSet<>());
+    /**
+     * Освобождает логин и email released, которые не совпадают со значениями kept.
+     */
+    private void releaseChanged(User released, User kept) {
+        if (!released.getLogin().equals(kept.getLogin())) {
+            userIdsByLogin.remove(released.getLogin(), released.getId());
+        }
+        if (!released.getEmail().equals(kept.getEmail())) {
+            userIdsByEmail.remove(released.getEmail(), released.getId());
         }
     }
 
-    private Long getUserUID() {
-        return ++userUID;
+    private void checkUserName(User user) {
+        if ((user.getName() == null) || user.getName().isEmpty() || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
     }
 }
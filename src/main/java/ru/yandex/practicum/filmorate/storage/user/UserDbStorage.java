@@ -1,38 +1,63 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateSqlException;
+import ru.yandex.practicum.filmorate.model.Fields;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.JdbcBatchUtils;
+import ru.yandex.practicum.filmorate.storage.friends.FriendIndex;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component("userDbStorage")
 @Repository
+@Profile("!inmemory & !eventlog")
 public class UserDbStorage implements UserStorage {
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private final String SELECT_FRIENDS_BY_USER_IDS_QUERY = "SELECT User_From, User_To FROM Friends WHERE User_From = ANY(?);";
+
     private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    @Autowired
+    private FriendIndex friendIndex;
 
     public UserDbStorage(JdbcTemplate jdbcTemplate){
         this.jdbcTemplate = jdbcTemplate;
+
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(STREAM_FETCH_SIZE);
     }
 
     @Override
-    public List<User> getUsersList()
+    public List<User> getUsersList(Fields fields)
     {
         try {
-            return jdbcTemplate.query("SELECT * FROM USER;", this::getUserDataFromQuery);
+            return hydrateUsers(jdbcTemplate.query("SELECT * FROM USER;", this::getUserDataFromQuery), fields);
         } catch (DataAccessException e) {
             log.info("Ошибка при чтении данных списка пользователей. Причина: {}", e.getCause().getMessage());
             throw new FilmorateSqlException("Ошибка при чтении данных списка пользователей");
@@ -40,22 +65,85 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    public List<User> getUsersPage(Long after, Integer limit, Fields fields)
+    {
+        try {
+            return hydrateUsers(jdbcTemplate.query("SELECT * FROM USER WHERE User_ID > ? ORDER BY User_ID LIMIT ?;",
+                    this::getUserDataFromQuery, after, limit), fields);
+        } catch (DataAccessException e) {
+            log.info("Ошибка при чтении страницы списка пользователей. Причина: {}", e.getCause().getMessage());
+            throw new FilmorateSqlException("Ошибка при чтении данных списка пользователей");
+        }
+    }
+
+    /**
+     * Потоковое чтение всех пользователей через forward-only курсор с ограниченным fetch size.
+     * Списки друзей дозагружаются пачками по {@link #STREAM_FETCH_SIZE} пользователей.
+     */
+    @Override
+    public void forEachUser(Fields fields, Consumer<User> action)
+    {
+        List<User> chunk = new ArrayList<>(STREAM_FETCH_SIZE);
+
+        try {
+            streamingJdbcTemplate.query("SELECT * FROM USER ORDER BY User_ID;", rs -> {
+                chunk.add(getUserDataFromQuery(rs, rs.getRow()));
+                if (chunk.size() == STREAM_FETCH_SIZE) {
+                    hydrateUsers(chunk, fields).forEach(action);
+                    chunk.clear();
+                }
+            });
+            hydrateUsers(chunk, fields).forEach(action);
+        } catch (DataAccessException e) {
+            log.info("Ошибка при потоковом чтении списка пользователей. Причина: {}", e.getCause().getMessage());
+            throw new FilmorateSqlException("Ошибка при чтении данных списка пользователей");
+        }
+    }
+
+    @Override
+    @Transactional
     public User createUser(User user)
     {
-        checkUserName(user);
+        return createUsers(List.of(user)).get(0);
+    }
 
+    /**
+     * Пакетное создание пользователей. Идентификаторы читаются из сгенерированных ключей,
+     * возвращаемые пользователи собираются из входных данных без повторного чтения из базы.
+     */
+    @Override
+    @Transactional
+    public List<User> createUsers(List<User> users)
+    {
         String sqlInsertQuery = "INSERT INTO USER (Login, Name, Email, Birthday) VALUES (?, ?, ?, ?);";
 
         try {
-            jdbcTemplate.update(sqlInsertQuery,
-                    user.getLogin(),
-                    user.getName(),
-                    user.getEmail(),
-                    user.getBirthday().format(DateTimeFormatter.ISO_DATE));
+            List<Object[]> rows = new ArrayList<>(users.size());
+            for (User user : users) {
+                checkUserName(user);
+                rows.add(new Object[] {
+                        user.getLogin(),
+                        user.getName(),
+                        user.getEmail(),
+                        user.getBirthday().format(DateTimeFormatter.ISO_DATE)});
+            }
+            List<Long> userIds = JdbcBatchUtils.batchInsert(jdbcTemplate, sqlInsertQuery, "User_ID", rows);
 
-            return jdbcTemplate.queryForObject("SELECT * FROM USER ORDER BY User_ID DESC LIMIT 1;", this::getUserDataFromQuery);
+            List<User> createdUsers = new ArrayList<>(users.size());
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                createdUsers.add(User.builder()
+                        .id(userIds.get(i))
+                        .login(user.getLogin())
+                        .name(user.getName())
+                        .email(user.getEmail())
+                        .birthday(user.getBirthday())
+                        .friends(new HashSet<>())
+                        .build());
+            }
+            return createdUsers;
         } catch (DataAccessException e) {
-            log.info("Ошибка при добавлении нового пользователя. Причина: {}", e.getCause().getMessage());
+            log.info("Ошибка при добавлении новых пользователей. Причина: {}", e.getMessage());
             throw new FilmorateSqlException("Ошибка при добавлении нового пользователя");
         }
     }
@@ -78,7 +166,8 @@ public class UserDbStorage implements UserStorage {
                 throw new FilmorateNotFoundException("Ошибка при обновлении данных пользователя. Пользователь с ID = " + userId + " не существует");
             }
 
-            return jdbcTemplate.queryForObject("SELECT * FROM USER WHERE User_ID = ?;", this::getUserDataFromQuery, userId);
+            User updatedUser = jdbcTemplate.queryForObject("SELECT * FROM USER WHERE User_ID = ?;", this::getUserDataFromQuery, userId);
+            return hydrateUsers(List.of(updatedUser), Fields.all()).get(0);
         } catch (DataAccessException e) {
             log.info("Ошибка при обновлении данных пользователя. Причина: {}", e.getCause().getMessage());
             throw new FilmorateSqlException("Ошибка при обновлении данных пользователя");
@@ -86,10 +175,11 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
-    public User getUser(Long userId)
+    public User getUser(Long userId, Fields fields)
     {
         try {
-            return jdbcTemplate.queryForObject("SELECT * FROM USER WHERE User_ID = ?;", this::getUserDataFromQuery, userId);
+            User user = jdbcTemplate.queryForObject("SELECT * FROM USER WHERE User_ID = ?;", this::getUserDataFromQuery, userId);
+            return hydrateUsers(List.of(user), fields).get(0);
         } catch (EmptyResultDataAccessException e) {
             log.info("Ошибка при чтении данных пользователя. Причина: {}", e.getMessage());
             throw new FilmorateNotFoundException("Пользователь с ID = " + userId + " не найден");
@@ -100,14 +190,14 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
-    public List<User> getFriendsList(Long userId)
+    public List<User> getFriendsList(Long userId, Fields fields)
     {
         String sqlQuery =   "SELECT u.* " +
                             "FROM USER AS u, FRIENDS f " +
                             "WHERE (u.User_ID = f.User_To) " +
                             "AND (f.User_From = ?);";
         try {
-            return jdbcTemplate.query(sqlQuery, this::getUserDataFromQuery, userId);
+            return hydrateUsers(jdbcTemplate.query(sqlQuery, this::getUserDataFromQuery, userId), fields);
         } catch (EmptyResultDataAccessException e) {
             log.info("Ошибка при чтении данных списка друзей пользователя. Причина: {}", e.getMessage());
             throw new FilmorateNotFoundException("Пользователь с ID = " + userId + " не найден");
@@ -117,58 +207,89 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    /**
+     * Общие друзья вычисляются пересечением наборов в {@link FriendIndex}, из базы одним запросом
+     * читаются только данные найденных пользователей.
+     */
+    @Override
+    public List<User> getCommonFriendsList(Long userId, Long otherId, Fields fields)
+    {
+        return getUsersByIds(friendIndex.getCommonFriendIds(userId, otherId), fields);
+    }
+
+    /**
+     * Чтение пользователей по списку ID. Порядок результата совпадает с порядком переданных ID,
+     * несуществующие ID пропускаются.
+     */
     @Override
-    public List<User> getCommonFriendsList(Long userId, Long otherId)
+    public List<User> getUsersByIds(List<Long> userIds, Fields fields)
     {
-        String sqlQuery =     "SELECT u.* "
-                            + "FROM USER u, FRIENDS f_0, FRIENDS f_1 "
-                            + "WHERE (f_0.USER_TO = f_1.USER_TO) "
-                            + "AND (u.User_ID = f_0.USER_TO) "
-                            + "AND (f_0.USER_FROM = ?) "
-                            + "AND (f_1.USER_FROM = ?);";
+        if (userIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
         try {
-            return jdbcTemplate.query(sqlQuery, this::getUserDataFromQuery, userId, otherId);
-        } catch (EmptyResultDataAccessException e) {
-            log.info("Ошибка при чтении данных списка общих друзей пользователя с userId = {} и пользователя с otherId = {}. Причина: {}",
-                    userId, otherId, e.getMessage());
-            throw new FilmorateNotFoundException("Пользователь с ID = " + userId + " не найден");
+            Map<Long, User> usersById = new HashMap<>();
+            List<User> users = jdbcTemplate.query("SELECT * FROM USER WHERE User_ID = ANY(?);",
+                    this::getUserDataFromQuery, (Object) userIds.toArray(new Long[0]));
+            hydrateUsers(users, fields).forEach(user -> usersById.put(user.getId(), user));
+
+            return userIds.stream()
+                    .map(usersById::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
         } catch (DataAccessException e) {
-            log.info("Ошибка при чтении данных списка общих друзей пользователя с userId = {} и пользователя с otherId = {}. Причина: {}",
-                    userId, otherId, e.getCause().getMessage());
-            throw new FilmorateSqlException("Ошибка при чтении данных списка общих друзей пользователя");
+            log.info("Ошибка при чтении данных списка пользователей по ID. Причина: {}", e.getCause().getMessage());
+            throw new FilmorateSqlException("Ошибка при чтении данных списка пользователей");
         }
     }
 
+    /**
+     * Маппинг базовой строки пользователя. Списки друзей дозагружаются для всей выборки сразу
+     * в {@link #hydrateUsers(List, Fields)}.
+     */
     private User getUserDataFromQuery(ResultSet rs, int rowNum) throws SQLException {
-        Long userId = rs.getLong("User_ID");
-        Set<Long> friendsIdList = getFriendsIdList(userId);
-
         return User.builder()
-                .id(userId)
+                .id(rs.getLong("User_ID"))
                 .login(rs.getString("Login"))
                 .name(rs.getString("Name"))
                 .email(rs.getString("Email"))
                 .birthday(LocalDate.parse(rs.getString("Birthday"), DateTimeFormatter.ISO_DATE))
-                .friends(friendsIdList)
+                .friends(new HashSet<>())
                 .build();
     }
 
-    private void checkUserName(User user) {
-        if ((user.getName() == null) || user.getName().isEmpty() || user.getName().isBlank()) {
-            user.setName(user.getLogin());
+    /**
+     * ID друзей всех пользователей выборки читаются одним запросом, поэтому количество запросов
+     * не зависит ни от числа пользователей, ни от размера их списков друзей. Если друзья не входят
+     * в набор полей, запрос не выполняется.
+     */
+    private List<User> hydrateUsers(List<User> users, Fields fields) {
+        if (users.isEmpty() || !fields.contains(User.FRIENDS_FIELD)) {
+            return users;
+        }
+
+        Long[] userIds = users.stream().map(User::getId).toArray(Long[]::new);
+        Map<Long, Set<Long>> friends = jdbcTemplate.query(SELECT_FRIENDS_BY_USER_IDS_QUERY,
+                (ResultSetExtractor<Map<Long, Set<Long>>>) this::friendsByUserIdFromQuery, (Object) userIds);
+
+        for (User user : users) {
+            user.setFriends(friends.getOrDefault(user.getId(), new HashSet<>()));
         }
+        return users;
     }
 
-    private Set<Long> getFriendsIdList(Long userId) {
-        String query = "SELECT User_To FROM Friends WHERE User_From = ?;";
-        try {
-            return new HashSet<>(jdbcTemplate.query(query, this::friendsIdListFromQuery, userId));
-        } catch (DataAccessException e) {
-            return new HashSet<>();
+    private Map<Long, Set<Long>> friendsByUserIdFromQuery(ResultSet rs) throws SQLException {
+        Map<Long, Set<Long>> friends = new HashMap<>();
+        while (rs.next()) {
+            friends.computeIfAbsent(rs.getLong("User_From"), id -> new HashSet<>()).add(rs.getLong("User_To"));
         }
+        return friends;
     }
 
-    private Long friendsIdListFromQuery(ResultSet rs, int rowNum) throws SQLException {
-        return rs.getLong("User_To");
+    private void checkUserName(User user) {
+        if ((user.getName() == null) || user.getName().isEmpty() || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
     }
 }
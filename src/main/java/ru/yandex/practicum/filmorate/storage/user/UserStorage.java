@@ -1,19 +1,57 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.Fields;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserStorage {
-    List<User> getUsersList();
+    default List<User> getUsersList() {
+        return getUsersList(Fields.all());
+    }
+
+    List<User> getUsersList(Fields fields);
+
+    default List<User> getUsersPage(Long after, Integer limit) {
+        return getUsersPage(after, limit, Fields.all());
+    }
+
+    List<User> getUsersPage(Long after, Integer limit, Fields fields);
+
+    default void forEachUser(Consumer<User> action) {
+        forEachUser(Fields.all(), action);
+    }
+
+    void forEachUser(Fields fields, Consumer<User> action);
 
     User createUser(User user);
 
+    List<User> createUsers(List<User> users);
+
     User updateUser(User user);
 
-    User getUser(Long userId);
+    default User getUser(Long userId) {
+        return getUser(userId, Fields.all());
+    }
+
+    User getUser(Long userId, Fields fields);
+
+    default List<User> getUsersByIds(List<Long> userIds) {
+        return getUsersByIds(userIds, Fields.all());
+    }
+
+    List<User> getUsersByIds(List<Long> userIds, Fields fields);
+
+    default List<User> getFriendsList(Long userId) {
+        return getFriendsList(userId, Fields.all());
+    }
+
+    List<User> getFriendsList(Long userId, Fields fields);
 
-    List<User> getFriendsList(Long userId);
+    default List<User> getCommonFriendsList(Long userId, Long otherId) {
+        return getCommonFriendsList(userId, otherId, Fields.all());
+    }
 
-    List<User> getCommonFriendsList(Long userId, Long otherId);
+    List<User> getCommonFriendsList(Long userId, Long otherId, Fields fields);
 }
@@ -19,6 +19,7 @@ CREATE TABLE IF NOT EXISTS Film (
 CREATE TABLE IF NOT EXISTS FilmLikes (
     User_ID     int         NOT NULL,
     Film_ID     int        NOT NULL,
+    Created_At  timestamp  DEFAULT CURRENT_TIMESTAMP,
     CONSTRAINT  pk_FilmLikes PRIMARY KEY(User_ID, Film_ID)
 );
 
@@ -64,3 +65,16 @@ ALTER TABLE FilmLikes   ADD CONSTRAINT IF NOT EXISTS fk_FilmLikes_FilmID    FORE
 ALTER TABLE Friends     ADD CONSTRAINT IF NOT EXISTS fk_Friends_User_From   FOREIGN KEY(User_From)    REFERENCES User (User_ID);
 ALTER TABLE Friends     ADD CONSTRAINT IF NOT EXISTS fk_Friends_User_To     FOREIGN KEY(User_To)      REFERENCES User (User_ID);
 
+-- Обратный индекс лайков: PK (User_ID, Film_ID) не помогает при поиске по фильму
+CREATE INDEX IF NOT EXISTS idx_FilmLikes_FilmID_UserID ON FilmLikes (Film_ID, User_ID);
+
+-- Время лайка для окон популярности (/films/trending); в базах, созданных раньше, колонка добавляется здесь
+ALTER TABLE FilmLikes ADD COLUMN IF NOT EXISTS Created_At timestamp DEFAULT CURRENT_TIMESTAMP;
+CREATE INDEX IF NOT EXISTS idx_FilmLikes_CreatedAt ON FilmLikes (Created_At);
+
+-- Каталог с фильтрами: жанр, рейтинг MPA и год выпуска, сортировка по популярности (LikesCount DESC, Film_ID)
+CREATE INDEX IF NOT EXISTS idx_FilmGenres_GenreID_FilmID ON FilmGenres (Genre_ID, Film_ID);
+CREATE INDEX IF NOT EXISTS idx_Film_MPA_LikesCount ON Film (MPA_Rating, LikesCount DESC, Film_ID);
+CREATE INDEX IF NOT EXISTS idx_Film_ReleaseDate ON Film (ReleaseDate);
+CREATE INDEX IF NOT EXISTS idx_Film_LikesCount ON Film (LikesCount DESC, Film_ID);
+
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.like.Like;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetGeneratorTest {
+
+    private static final DatasetSpec SPEC = DatasetSpec.builder()
+            .users(2_000)
+            .films(500)
+            .likes(20_000)
+            .friendships(10_000)
+            .build();
+
+    @Test
+    public void sameSeedSameDatasetTest() {
+        CollectingWriter first = generate(SPEC);
+        CollectingWriter second = generate(SPEC);
+        CollectingWriter otherSeed = generate(SPEC.toBuilder().seed(7L).build());
+
+        assertEquals(first.likes, second.likes);
+        assertEquals(first.likedAtMillis, second.likedAtMillis);
+        assertEquals(first.friendships, second.friendships);
+        assertNotEquals(first.likes, otherSeed.likes);
+        assertTrue(first.finished);
+    }
+
+    @Test
+    public void countsAndUniquenessTest() {
+        CollectingWriter writer = generate(SPEC);
+
+        assertEquals(SPEC.getUsers(), writer.usersCount);
+        assertEquals(SPEC.getFilms(), writer.filmsCount);
+        assertEquals(SPEC.getLikes(), writer.likes.size());
+        assertEquals(SPEC.getFriendships(), writer.friendships.size());
+        assertEquals(writer.likes.size(), new HashSet<>(writer.likes).size());
+        assertEquals(writer.friendships.size(), new HashSet<>(writer.friendships).size());
+        assertTrue(writer.friendships.stream().noneMatch(pair -> pair.get(0).equals(pair.get(1))));
+    }
+
+    @Test
+    public void powerLawLikesTest() {
+        CollectingWriter writer = generate(SPEC);
+
+        List<Long> likesPerFilm = writer.likes.stream()
+                .collect(Collectors.groupingBy(Like::getFilmId, Collectors.counting()))
+                .values().stream()
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+        long topTenPercent = likesPerFilm.stream().limit(SPEC.getFilms() / 10).mapToLong(Long::longValue).sum();
+
+        // При равномерном распределении на 10% фильмов пришлось бы около 10% лайков
+        assertTrue(topTenPercent > writer.likes.size() / 3, "Лайков у 10% самых популярных фильмов: " + topTenPercent);
+    }
+
+    @Test
+    public void likeTimesTest() {
+        CollectingWriter writer = generate(SPEC);
+
+        long until = SPEC.getLikedUntil().toEpochMilli();
+        long from = SPEC.getLikedUntil().minus(Duration.ofDays(SPEC.getLikesPeriodDays())).toEpochMilli();
+        assertEquals(writer.likes.size(), writer.likedAtMillis.size());
+        assertTrue(writer.likedAtMillis.stream().allMatch(likedAt -> (likedAt >= from) && (likedAt < until)));
+        // Время распределено по периоду, а не совпадает у всех лайков
+        assertTrue(new HashSet<>(writer.likedAtMillis).size() > writer.likes.size() / 2);
+    }
+
+    private static CollectingWriter generate(DatasetSpec spec) {
+        CollectingWriter writer = new CollectingWriter();
+        DatasetGenerator.generate(spec, writer);
+        return writer;
+    }
+
+    private static class CollectingWriter implements DatasetWriter {
+        private int usersCount;
+        private int filmsCount;
+        private final List<Like> likes = new ArrayList<>();
+        private final List<Long> likedAtMillis = new ArrayList<>();
+        private final List<List<Long>> friendships = new ArrayList<>();
+        private boolean finished;
+
+        @Override
+        public List<Long> writeUsers(List<User> users) {
+            return ids(usersCount, usersCount += users.size());
+        }
+
+        @Override
+        public List<Long> writeFilms(List<Film> films) {
+            return ids(filmsCount, filmsCount += films.size());
+        }
+
+        @Override
+        public void writeLikes(List<Like> likes, long[] likedAtMillis) {
+            this.likes.addAll(likes);
+            for (int i = 0; i < likes.size(); i++) {
+                this.likedAtMillis.add(likedAtMillis[i]);
+            }
+        }
+
+        @Override
+        public void writeFriendships(List<long[]> friendships) {
+            friendships.forEach(pair -> this.friendships.add(List.of(pair[0], pair[1])));
+        }
+
+        @Override
+        public void finish() {
+            finished = true;
+        }
+
+        private static List<Long> ids(int from, int to) {
+            return LongStream.rangeClosed(from + 1, to).boxed().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.storage.eventlog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.genre.Genre;
+import ru.yandex.practicum.filmorate.model.mpa.MPA;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void replayTest() throws IOException {
+        EventLog eventLog = new EventLog(directory.toString(), 64 * 1024);
+        eventLog.appendFilmSaved(Film.builder()
+                .id(1L)
+                .name("Чебурашка")
+                .description("Мультфильм")
+                .mpa(MPA.builder().id(4).build())
+                .genres(List.of(Genre.builder().id(3).build(), Genre.builder().id(1).build()))
+                .releaseDate(LocalDate.of(1971, 1, 1))
+                .duration(113)
+                .build());
+        eventLog.appendUserSaved(User.builder()
+                .id(2L)
+                .email("user@mail.ru")
+                .login("user")
+                .name("Пользователь")
+                .build());
+        long likesPosition = eventLog.getPosition();
+        eventLog.appendLikeAdded(1L, 2L, 1000L);
+        eventLog.appendLikeDeleted(1L, 2L);
+        eventLog.appendFriendAdded(2L, 3L);
+        eventLog.appendFriendDeleted(2L, 3L);
+        eventLog.close();
+
+        // После перезапуска журнал продолжается в новом сегменте, прежние записи повторяются
+        EventLog reopened = new EventLog(directory.toString(), 64 * 1024);
+        assertTrue(reopened.getPosition() > likesPosition);
+
+        List<String> records = new ArrayList<>();
+        List<Film> films = new ArrayList<>();
+        List<User> users = new ArrayList<>();
+        assertEquals(6, reopened.replay(0L, recorder(records, films, users)));
+        assertEquals(List.of("film 1", "user 2", "like 1 2 1000", "unlike 1 2", "friend 2 3", "unfriend 2 3"), records);
+
+        Film film = films.get(0);
+        assertEquals("Чебурашка", film.getName());
+        assertEquals("Мультфильм", film.getDescription());
+        assertEquals(4, film.getMpa().getId());
+        assertEquals(List.of(3, 1), film.getGenres().stream().map(Genre::getId).collect(Collectors.toList()));
+        assertEquals(LocalDate.of(1971, 1, 1), film.getReleaseDate());
+        assertEquals(113, film.getDuration());
+
+        User user = users.get(0);
+        assertEquals("user@mail.ru", user.getEmail());
+        assertEquals("Пользователь", user.getName());
+        assertNull(user.getBirthday());
+
+        records.clear();
+        assertEquals(4, reopened.replay(likesPosition, recorder(records, films, users)));
+        assertEquals("like 1 2 1000", records.get(0));
+    }
+
+    @Test
+    public void segmentsCompactionTest() throws IOException {
+        EventLog eventLog = new EventLog(directory.toString(), 256);
+        for (long i = 0; i < 100; i++) {
+            eventLog.appendLikeAdded(i, i, i);
+        }
+        long checkpointPosition = eventLog.checkpointPosition();
+        for (long i = 100; i < 110; i++) {
+            eventLog.appendLikeAdded(i, i, i);
+        }
+        assertTrue(segmentsCount() > 10);
+
+        assertTrue(eventLog.compact(checkpointPosition) > 0);
+        eventLog.close();
+
+        // Удалены только сегменты до контрольной точки: после нее повторяются ровно 10 лайков
+        EventLog reopened = new EventLog(directory.toString(), 256);
+        List<String> records = new ArrayList<>();
+        assertEquals(10, reopened.replay(checkpointPosition, recorder(records, new ArrayList<>(), new ArrayList<>())));
+        assertEquals("like 100 100 100", records.get(0));
+        assertTrue(reopened.replay(0L, new EventLogVisitor() {}) < 100);
+    }
+
+    @Test
+    public void tornRecordTest() throws IOException {
+        EventLog eventLog = new EventLog(directory.toString(), 64 * 1024);
+        eventLog.appendLikeAdded(1L, 1L, 1L);
+        long tornPosition = eventLog.getPosition();
+        eventLog.appendLikeAdded(2L, 2L, 2L);
+        eventLog.appendLikeAdded(3L, 3L, 3L);
+        eventLog.close();
+
+        // Портим данные второй записи: повтор сегмента останавливается на ней
+        try (FileChannel channel = FileChannel.open(directory.resolve(String.format("%020d.log", 0)),
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {42}), tornPosition + 10);
+        }
+
+        EventLog reopened = new EventLog(directory.toString(), 64 * 1024);
+        List<String> records = new ArrayList<>();
+        assertEquals(1, reopened.replay(0L, recorder(records, new ArrayList<>(), new ArrayList<>())));
+        assertEquals(List.of("like 1 1 1"), records);
+    }
+
+    private long segmentsCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static EventLogVisitor recorder(List<String> records, List<Film> films, List<User> users) {
+        return new EventLogVisitor() {
+            @Override
+            public void onFilmSaved(Film film) {
+                films.add(film);
+                records.add("film " + film.getId());
+            }
+
+            @Override
+            public void onUserSaved(User user) {
+                users.add(user);
+                records.add("user " + user.getId());
+            }
+
+            @Override
+            public void onLikeAdded(long filmId, long userId, long likedAtMillis) {
+                records.add("like " + filmId + " " + userId + " " + likedAtMillis);
+            }
+
+            @Override
+            public void onLikeDeleted(long filmId, long userId) {
+                records.add("unlike " + filmId + " " + userId);
+            }
+
+            @Override
+            public void onFriendAdded(long userId, long friendId) {
+                records.add("friend " + userId + " " + friendId);
+            }
+
+            @Override
+            public void onFriendDeleted(long userId, long friendId) {
+                records.add("unfriend " + userId + " " + friendId);
+            }
+        };
+    }
+}
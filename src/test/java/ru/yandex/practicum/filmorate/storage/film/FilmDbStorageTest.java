@@ -1,20 +1,49 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import org.h2.api.Trigger;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
+import ru.yandex.practicum.filmorate.model.Fields;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.genre.Genre;
+import ru.yandex.practicum.filmorate.model.like.Like;
+import ru.yandex.practicum.filmorate.model.like.LikeResult;
+import ru.yandex.practicum.filmorate.model.like.LikeStatus;
+import ru.yandex.practicum.filmorate.model.like.LikesCountReconciliation;
 import ru.yandex.practicum.filmorate.model.mpa.MPA;
+import ru.yandex.practicum.filmorate.monitoring.SqlStatistics;
+import ru.yandex.practicum.filmorate.monitoring.StorageMetricsInterceptor;
+import ru.yandex.practicum.filmorate.service.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.service.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.TrendingFilms;
 import ru.yandex.practicum.filmorate.storage.like.LikeDbStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikesCountBuffer;
+import ru.yandex.practicum.filmorate.storage.like.LikesCountReconciler;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -25,6 +54,14 @@ import static org.junit.jupiter.api.Assertions.*;
 class FilmDbStorageTest {
     private final FilmDbStorage filmStorage;
     private final LikeDbStorage likeStorage;
+    private final FilmLeaderboard filmLeaderboard;
+    private final FilmSearchIndex filmSearchIndex;
+    private final TrendingFilms trendingFilms;
+    private final LikesCountBuffer likesCountBuffer;
+    private final LikesCountReconciler likesCountReconciler;
+    private final RecommendationService recommendationService;
+    private final MeterRegistry meterRegistry;
+    private final JdbcTemplate jdbcTemplate;
 
     @Test
     public void getFilmsListTest() {
@@ -32,6 +69,71 @@ class FilmDbStorageTest {
         assertEquals(5, fl.size());
     }
 
+    @Test
+    public void getFilmProjectionTest() {
+        likeStorage.addLike(1L, 1L);
+
+        Film full = filmStorage.getFilm(1L);
+        Film summary = filmStorage.getFilm(1L, Film.SUMMARY_FIELDS);
+        Film nameOnly = filmStorage.getFilm(1L, Fields.of("name"));
+
+        assertTrue(full.getLikesList().contains(1L));
+        assertTrue(summary.getLikesList().isEmpty());
+        assertEquals(full.getGenres(), summary.getGenres());
+        assertTrue(nameOnly.getGenres().isEmpty());
+        assertEquals(full.getName(), nameOnly.getName());
+    }
+
+    @Test
+    public void getFilmsPageTest() {
+        List<Film> page_0 = filmStorage.getFilmsPage(0L, 2);
+        List<Film> page_1 = filmStorage.getFilmsPage(page_0.get(1).getId(), 2);
+
+        assertEquals(2, page_0.size());
+        assertEquals(1L, page_0.get(0).getId());
+        assertEquals(2L, page_0.get(1).getId());
+
+        assertEquals(2, page_1.size());
+        assertEquals(3L, page_1.get(0).getId());
+        assertEquals(4L, page_1.get(1).getId());
+    }
+
+    @Test
+    public void getFilmsFilteredTest() {
+        for (Long filmId : List.of(3L, 5L)) {
+            Film f = filmStorage.getFilm(filmId);
+            f.setGenres(List.of(Genre.builder().id(5).build()));
+            filmStorage.updateFilm(f);
+        }
+        jdbcTemplate.update("UPDATE Film SET LikesCount = 3 WHERE Film_ID = 5");
+
+        assertEquals(List.of(2L, 4L), filmIds(FilmFilter.builder().mpaId(4).yearFrom(2000).build(), 10));
+        assertEquals(List.of(4L, 5L), filmIds(FilmFilter.builder().yearFrom(1999).yearTo(2000).build(), 10));
+        assertEquals(List.of(3L, 5L), filmIds(FilmFilter.builder().genreId(5).build(), 10));
+        assertEquals(List.of(5L), filmIds(FilmFilter.builder().genreId(5).mpaId(4).build(), 10));
+
+        // Keyset по (LikesCount, Film_ID): вторая страница начинается после последнего фильма первой
+        FilmFilter popular = FilmFilter.builder().mpaId(4).sort(FilmFilter.Sort.POPULAR).build();
+        assertEquals(List.of(5L, 2L), filmIds(popular, 2));
+        assertEquals(List.of(4L), filmIds(popular.toBuilder().afterId(2L).afterLikesCount(0).build(), 2));
+        assertEquals(List.of(2L, 4L), filmIds(popular.toBuilder().afterId(5L).afterLikesCount(3).build(), 2));
+    }
+
+    private List<Long> filmIds(FilmFilter filter, int limit) {
+        return filmStorage.getFilmsFiltered(filter, limit, Fields.of()).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void forEachFilmTest() {
+        List<Film> fl = new ArrayList<>();
+        filmStorage.forEachFilm(fl::add);
+
+        assertEquals(filmStorage.getFilmsList().size(), fl.size());
+        assertEquals(1L, fl.get(0).getId());
+    }
+
     @Test
     public void getFilmTest() {
         Film f = filmStorage.getFilm(2L);
@@ -39,6 +141,52 @@ class FilmDbStorageTest {
         assertEquals(93, f.getDuration());
     }
 
+    @Test
+    public void getFilmsListHydrationTest() {
+        Film f = filmStorage.getFilm(4L);
+        f.setGenres(List.of(Genre.builder().id(1).build(), Genre.builder().id(6).build()));
+        filmStorage.updateFilm(f);
+        likeStorage.addLike(4L, 1L);
+
+        Film tf = filmStorage.getFilmsList().stream()
+                .filter(c -> c.getId() == 4L)
+                .findFirst()
+                .orElseThrow();
+
+        assertEquals("R", tf.getMpa().getName());
+        assertEquals(2, tf.getGenres().size());
+        assertEquals("Комедия", tf.getGenres().get(0).getName());
+        assertEquals("Боевик", tf.getGenres().get(1).getName());
+        assertTrue(tf.getLikesList().contains(1L));
+    }
+
+    @Test
+    public void getFilmsListStatementsTest() {
+        SqlStatistics statistics = SqlStatistics.measure(() -> filmStorage.getFilmsList());
+
+        // Фильмы, жанры и лайки - по одному запросу на весь список, без запросов на каждый фильм
+        assertTrue(statistics.getStatementsCount() <= 3, "SQL-запросов: " + statistics.getStatementsCount());
+        assertTrue(statistics.getRepeatedShapes(2).isEmpty(), "Повторы: " + statistics.getRepeatedShapes(2));
+    }
+
+    @Test
+    public void storageMetricsTest() {
+        filmStorage.getFilmsList();
+        assertThrows(FilmorateNotFoundException.class, () -> filmStorage.getFilm(999L));
+
+        Timer timer = meterRegistry.find(StorageMetricsInterceptor.TIMER)
+                .tags("storage", "filmDbStorage", "method", "getFilmsList", "exception", "none")
+                .timer();
+        assertNotNull(timer);
+        assertTrue(timer.count() > 0);
+        assertNotNull(meterRegistry.find(StorageMetricsInterceptor.ROWS)
+                .tags("storage", "filmDbStorage", "method", "getFilmsList")
+                .summary());
+        assertTrue(meterRegistry.find(StorageMetricsInterceptor.ERRORS)
+                .tags("method", "getFilm", "exception", "FilmorateNotFoundException")
+                .counter().count() > 0);
+    }
+
     @Test
     public void createFilmTest(){
         Film test_film = Film.builder()
@@ -58,6 +206,32 @@ class FilmDbStorageTest {
         assertEquals("test_film_name_0", retFilm.getName());
     }
 
+    @Test
+    public void createFilmsTest() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            films.add(Film.builder()
+                    .name("batch_film_" + i)
+                    .description("batch description " + i)
+                    .genres(List.of(Genre.builder().id(2).build(), Genre.builder().id(1).build()))
+                    .mpa(MPA.builder().id(1).build())
+                    .releaseDate(LocalDate.parse("1941-01-01", DateTimeFormatter.ISO_DATE))
+                    .duration(100 + i)
+                    .build());
+        }
+
+        List<Film> created = filmStorage.createFilms(films);
+
+        assertEquals(3, created.size());
+        for (int i = 0; i < created.size(); i++) {
+            Film stored = filmStorage.getFilm(created.get(i).getId());
+            assertEquals("batch_film_" + i, stored.getName());
+            assertEquals(stored.getGenres(), created.get(i).getGenres());
+            assertEquals(stored.getMpa(), created.get(i).getMpa());
+        }
+        assertEquals(created.get(0).getId() + 1, created.get(1).getId());
+    }
+
     @Test
     public void updateFilmTest() {
         Film ret_film_0 = filmStorage.getFilm(1L);
@@ -83,6 +257,47 @@ class FilmDbStorageTest {
         assertEquals(120, ret_film.getDuration());
     }
 
+    @Test
+    public void updateFilmGenresDiffTest() {
+        Film f = filmStorage.getFilm(2L);
+        f.setGenres(List.of(Genre.builder().id(3).build(), Genre.builder().id(1).build()));
+        filmStorage.updateFilm(f);
+        assertEquals(List.of(1, 3), storedGenreIds(2L));
+
+        f.setGenres(List.of(Genre.builder().id(4).build(), Genre.builder().id(3).build()));
+        Film updated = filmStorage.updateFilm(f);
+        assertEquals(List.of(3, 4), storedGenreIds(2L));
+        assertEquals(List.of(3, 4), updated.getGenres().stream().map(Genre::getId).collect(Collectors.toList()));
+        assertEquals(filmStorage.getFilm(2L).getName(), updated.getName());
+
+        // Без изменений: только чтение фильма с блокировкой, без записи
+        SqlStatistics statistics = SqlStatistics.measure(() -> filmStorage.updateFilm(f));
+        assertEquals(1, statistics.getStatementsCount());
+
+        // Жанры не заданы - остаются прежние
+        f.setDescription("Новое описание");
+        Film withoutGenres = Film.builder()
+                .id(2L)
+                .name(f.getName())
+                .mpa(f.getMpa())
+                .description(f.getDescription())
+                .releaseDate(f.getReleaseDate())
+                .duration(f.getDuration())
+                .build();
+        assertEquals(List.of(3, 4), filmStorage.updateFilm(withoutGenres).getGenres().stream()
+                .map(Genre::getId).collect(Collectors.toList()));
+        assertEquals(List.of(3, 4), storedGenreIds(2L));
+        assertEquals("Новое описание", filmStorage.getFilm(2L).getDescription());
+
+        withoutGenres.setId(999L);
+        assertThrows(FilmorateNotFoundException.class, () -> filmStorage.updateFilm(withoutGenres));
+    }
+
+    private List<Integer> storedGenreIds(Long filmId) {
+        return jdbcTemplate.queryForList("SELECT Genre_ID FROM FilmGenres WHERE Film_ID = ? ORDER BY Genre_ID",
+                Integer.class, filmId);
+    }
+
     @Test
     public void addLikeTest() {
         Film tf_0 = filmStorage.getFilm(3L);
@@ -99,6 +314,158 @@ class FilmDbStorageTest {
         assertTrue(tf_1.getLikesList().contains(4L));
     }
 
+    @Test
+    public void likedFilmsListLeaderboardTest() {
+        filmLeaderboard.rebuild();
+        int likesCount = filmLeaderboard.getLikesCount(5L);
+
+        likeStorage.addLike(5L, 1L);
+        likeStorage.addLike(5L, 6L);
+        likeStorage.addLike(1L, 6L);
+
+        assertEquals(likesCount + 2, filmLeaderboard.getLikesCount(5L));
+        assertEquals(expectedTopFilmIds(), filmLeaderboard.getTopFilmIds(5));
+
+        // Обновление фильма не перезаписывает счетчик прочитанным LikesCount: событие о лайке,
+        // пришедшее между чтением фильма и публикацией FilmSavedEvent, не теряется
+        Film film = filmStorage.getFilm(5L);
+        film.setDescription(film.getDescription() + " (обновлено)");
+        filmLeaderboard.addLikes(5L, 1);
+        filmStorage.updateFilm(film);
+        assertEquals(likesCount + 3, filmLeaderboard.getLikesCount(5L));
+        filmLeaderboard.addLikes(5L, -1);
+
+        likeStorage.deleteLike(5L, 1L);
+        likeStorage.deleteLike(5L, 6L);
+
+        assertEquals(likesCount, filmLeaderboard.getLikesCount(5L));
+        assertEquals(expectedTopFilmIds(), filmLeaderboard.getTopFilmIds(5));
+
+        List<Film> fl = filmStorage.getFilmsByIds(filmLeaderboard.getTopFilmIds(2));
+        assertEquals(filmLeaderboard.getTopFilmIds(2).get(0), fl.get(0).getId());
+        assertEquals(filmLeaderboard.getLikesCount(fl.get(0).getId()), fl.get(0).getLikesCount());
+    }
+
+    @Test
+    public void addLikesTest() {
+        List<Like> likes = new ArrayList<>();
+        likes.add(new Like(2L, 1L));
+        likes.add(new Like(2L, 1L));
+        likes.add(new Like(2L, 6L));
+        likes.add(new Like(999L, 1L));
+        likes.add(new Like(2L, 999L));
+        likes.add(new Like(null, 1L));
+
+        List<LikeResult> results = likeStorage.addLikes(likes);
+
+        assertEquals(LikeStatus.ADDED, results.get(0).getStatus());
+        assertEquals(LikeStatus.ALREADY_EXISTS, results.get(1).getStatus());
+        assertEquals(LikeStatus.ADDED, results.get(2).getStatus());
+        assertEquals(LikeStatus.FILM_NOT_FOUND, results.get(3).getStatus());
+        assertEquals(LikeStatus.USER_NOT_FOUND, results.get(4).getStatus());
+        assertEquals(LikeStatus.INVALID, results.get(5).getStatus());
+
+        Film tf = filmStorage.getFilm(2L);
+        assertTrue(tf.getLikesList().contains(1L));
+        assertTrue(tf.getLikesList().contains(6L));
+    }
+
+    @Test
+    public void addLikesBatchErrorTest() {
+        // Первая пачка: один новый лайк и неверные записи, вторая пачка падает на триггере
+        List<Like> likes = new ArrayList<>();
+        likes.add(new Like(3L, 3L));
+        for (int i = 1; i < 1000; i++) {
+            likes.add(new Like(null, 1L));
+        }
+        likes.add(new Like(3L, 6L));
+
+        jdbcTemplate.execute("CREATE TRIGGER fail_like BEFORE INSERT ON FilmLikes FOR EACH ROW CALL \""
+                + FailingLikeTrigger.class.getName() + "\"");
+        List<LikeResult> results;
+        try {
+            results = likeStorage.addLikes(likes);
+        } finally {
+            jdbcTemplate.execute("DROP TRIGGER fail_like");
+        }
+
+        assertEquals(likes.size(), results.size());
+        assertEquals(LikeStatus.ADDED, results.get(0).getStatus());
+        assertEquals(LikeStatus.INVALID, results.get(999).getStatus());
+        assertEquals(LikeStatus.ERROR, results.get(1000).getStatus());
+
+        Film film = filmStorage.getFilm(3L);
+        assertTrue(film.getLikesList().contains(3L));
+        assertFalse(film.getLikesList().contains(6L));
+        likeStorage.deleteLike(3L, 3L);
+    }
+
+    @Test
+    public void likesCountBufferTest() {
+        int likesCount = filmStorage.getFilm(1L).getLikesCount();
+
+        likeStorage.addLike(1L, 3L);
+
+        assertEquals(likesCount + 1, filmStorage.getFilm(1L).getLikesCount());
+
+        assertTrue(likesCountBuffer.flush());
+
+        assertEquals(0, likesCountBuffer.getPending(1L));
+        assertEquals(likesCount + 1, filmStorage.getFilm(1L).getLikesCount());
+    }
+
+    @Test
+    public void likesCountReconcilerTest() {
+        jdbcTemplate.update("UPDATE Film SET LikesCount = 42 WHERE Film_ID = 3");
+        Integer actualCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FilmLikes WHERE Film_ID = 3", Integer.class);
+
+        assertTrue(likesCountReconciler.reconcile());
+
+        LikesCountReconciliation status = likesCountReconciler.getStatus();
+        assertEquals(LikesCountReconciliation.State.FINISHED, status.getState());
+        assertEquals(status.getChunksTotal(), status.getChunksDone());
+        assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Film", Long.class), status.getFilmsChecked());
+        assertTrue(status.getFilmsCorrected() >= 1);
+        assertTrue(status.getLikesDrift() >= 42 - actualCount);
+
+        assertEquals(actualCount, jdbcTemplate.queryForObject("SELECT LikesCount FROM Film WHERE Film_ID = 3", Integer.class));
+        assertEquals(actualCount, filmStorage.getFilm(3L).getLikesCount());
+        assertEquals(actualCount, filmLeaderboard.getLikesCount(3L));
+        assertTrue(meterRegistry.get("filmorate.likes.reconcile.films.corrected").counter().count() >= 1);
+
+        // Повторная сверка расхождений не находит
+        assertTrue(likesCountReconciler.reconcile());
+        assertEquals(0, likesCountReconciler.getStatus().getFilmsCorrected());
+    }
+
+    @Test
+    public void scheduledReconcileDoesNotBlockFlushTest() throws Exception {
+        // Как у планировщика Spring по умолчанию: плановые сверка и сброс буфера идут в одном потоке
+        ExecutorService scheduler = Executors.newSingleThreadExecutor();
+        try {
+            // Плановая сверка только запускается и сразу возвращает поток планировщика
+            LikesCountReconciliation.State state = scheduler.submit(() -> {
+                likesCountReconciler.scheduledReconcile();
+                return likesCountReconciler.getStatus().getState();
+            }).get(5, TimeUnit.SECONDS);
+            assertEquals(LikesCountReconciliation.State.RUNNING, state);
+
+            likeStorage.addLike(3L, 5L);
+            scheduler.submit(likesCountBuffer::flush).get(5, TimeUnit.SECONDS);
+            assertEquals(0, likesCountBuffer.getPending(3L));
+        } finally {
+            scheduler.shutdown();
+        }
+
+        Instant deadline = Instant.now().plusSeconds(10);
+        while ((likesCountReconciler.getStatus().getState() == LikesCountReconciliation.State.RUNNING)
+                && Instant.now().isBefore(deadline)) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertEquals(LikesCountReconciliation.State.FINISHED, likesCountReconciler.getStatus().getState());
+        likeStorage.deleteLike(3L, 5L);
+    }
+
     @Test
     public void deleteLikeTest() {
         likeStorage.addLike(2L, 3L);
@@ -120,4 +487,144 @@ class FilmDbStorageTest {
         assertTrue(tf_1.getLikesList().contains(3L));
         assertTrue(tf_1.getLikesList().contains(5L));
     }
-}
\ No newline at end of file
+
+    /**
+     * Отклоняет вставку лайка пользователя 6 фильму 3.
+     */
+    public static class FailingLikeTrigger implements Trigger {
+
+        @Override
+        public void init(Connection conn, String schemaName, String triggerName, String tableName,
+                         boolean before, int type) {
+        }
+
+        @Override
+        public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+            if ((((Number) newRow[0]).longValue() == 6L) && (((Number) newRow[1]).longValue() == 3L)) {
+                throw new SQLException("Лайк отклонен триггером");
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void remove() {
+        }
+    }
+
+    private List<Long> expectedTopFilmIds() {
+        return filmStorage.getLikesCounts().entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .limit(5)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void filmSearchIndexTest() {
+        filmLeaderboard.rebuild();
+        filmSearchIndex.rebuild();
+
+        assertEquals(List.of(4L), filmSearchIndex.search("брат", 10));
+        assertEquals(List.of(5L), filmSearchIndex.search("Зел МИЛ", 10));
+        assertEquals(List.of(3L), filmSearchIndex.search("вирус унес", 10));
+        assertTrue(filmSearchIndex.search("брат зеленая", 10).isEmpty());
+
+        // "че" - префикс и "Чебурашка", и "чём": при равной релевантности выше фильм с лайками
+        filmLeaderboard.setLikesCount(2L, 5);
+        assertEquals(List.of(2L, 1L), filmSearchIndex.search("че", 10));
+        assertEquals(List.of(2L), filmSearchIndex.search("че", 1));
+
+        Film f = filmStorage.getFilm(1L);
+        f.setName("Крокодил Гена");
+        filmStorage.updateFilm(f);
+        assertEquals(List.of(1L), filmSearchIndex.search("крок", 10));
+        assertEquals(List.of(2L, 1L), filmSearchIndex.search("че", 10));
+        assertTrue(filmSearchIndex.search("гена чебурашка", 10).contains(1L));
+        assertTrue(filmSearchIndex.search("крокодил брат", 10).isEmpty());
+
+        // Популярный фильм со словом только в описании не обгоняет фильм без лайков с этим словом в названии
+        Film popular = filmStorage.getFilm(4L);
+        popular.setDescription("Легенда о Даниле Багрове");
+        filmStorage.updateFilm(popular);
+        filmLeaderboard.setLikesCount(4L, 1_000_000);
+        assertEquals(List.of(3L, 4L), filmSearchIndex.search("легенда", 10));
+        assertEquals(List.of(3L, 4L), filmSearchIndex.search("леген", 10));
+    }
+
+    @Test
+    public void trendingFilmsTest() {
+        trendingFilms.rebuild();
+        Instant now = Instant.now();
+
+        // ID вне тестовых данных: окна не зависят от лайков, поставленных другими тестами
+        trendingFilms.addLikes(1001L, now, 2);
+        trendingFilms.addLikes(1002L, now.minus(Duration.ofHours(2)), 3);
+        trendingFilms.addLikes(1003L, now.minus(Duration.ofDays(3)), 50);
+        trendingFilms.addLikes(1004L, now.minus(Duration.ofDays(8)), 100);
+
+        assertEquals(2, trendingFilms.getLikesCount(TrendingFilms.Window.HOUR, 1001L));
+        assertEquals(0, trendingFilms.getLikesCount(TrendingFilms.Window.HOUR, 1002L));
+        assertEquals(3, trendingFilms.getLikesCount(TrendingFilms.Window.DAY, 1002L));
+        assertEquals(0, trendingFilms.getLikesCount(TrendingFilms.Window.DAY, 1003L));
+        assertEquals(List.of(1003L), trendingFilms.getTopFilmIds(TrendingFilms.Window.WEEK, 1));
+        assertFalse(trendingFilms.getTopFilmIds(TrendingFilms.Window.WEEK, 100).contains(1004L));
+
+        // Удаление лайка вычитается из корзины его минуты, а не текущей
+        trendingFilms.addLikes(1002L, now.minus(Duration.ofHours(2)), -3);
+        assertFalse(trendingFilms.getTopFilmIds(TrendingFilms.Window.DAY, 100).contains(1002L));
+        assertEquals(2, trendingFilms.getLikesCount(TrendingFilms.Window.DAY, 1001L));
+
+        int likesCount = trendingFilms.getLikesCount(TrendingFilms.Window.HOUR, 4L);
+        likeStorage.addLike(4L, 6L);
+        assertEquals(likesCount + 1, trendingFilms.getLikesCount(TrendingFilms.Window.HOUR, 4L));
+        likeStorage.deleteLike(4L, 6L);
+        assertEquals(likesCount, trendingFilms.getLikesCount(TrendingFilms.Window.HOUR, 4L));
+
+        // После перезапуска окна восстанавливаются по сохраненному времени лайков
+        likeStorage.addLike(4L, 6L);
+        trendingFilms.rebuild();
+        assertEquals(likesCount + 1, trendingFilms.getLikesCount(TrendingFilms.Window.WEEK, 4L));
+        assertEquals(0, trendingFilms.getLikesCount(TrendingFilms.Window.WEEK, 1003L));
+        likeStorage.deleteLike(4L, 6L);
+    }
+
+    @Test
+    public void recommendationsTest() {
+        likeStorage.addLike(3L, 4L);
+        likeStorage.addLike(3L, 2L);
+        likeStorage.addLike(5L, 2L);
+        likeStorage.addLike(5L, 3L);
+        likeStorage.deleteLike(5L, 3L);
+
+        List<Long> recommended = recommendationService.getRecommendedFilmIds(4L, 10);
+        assertTrue(recommended.contains(5L));
+        assertFalse(recommended.contains(3L));
+
+        // Инкрементально обновленная модель должна совпадать с построенной заново
+        recommendationService.rebuild();
+        assertEquals(recommended, recommendationService.getRecommendedFilmIds(4L, 10));
+    }
+
+    @Test
+    public void likesPagesTest() {
+        likeStorage.addLike(2L, 1L);
+        likeStorage.addLike(2L, 3L);
+        likeStorage.addLike(2L, 5L);
+        likeStorage.addLike(4L, 5L);
+
+        List<Long> likerIds = filmStorage.getFilm(2L).getLikesList().stream().sorted().collect(Collectors.toList());
+        assertEquals(likerIds, likeStorage.getLikerIds(2L, 0L, 100));
+        assertEquals(likerIds.subList(1, 3), likeStorage.getLikerIds(2L, likerIds.get(0), 2));
+
+        List<Long> likedFilmIds = filmStorage.getFilmsList().stream()
+                .filter(film -> film.getLikesList().contains(5L))
+                .map(Film::getId)
+                .sorted()
+                .collect(Collectors.toList());
+        assertEquals(likedFilmIds, likeStorage.getLikedFilmIds(5L, 0L, 100));
+        assertEquals(likedFilmIds.subList(0, 1), likeStorage.getLikedFilmIds(5L, 0L, 1));
+    }
+}
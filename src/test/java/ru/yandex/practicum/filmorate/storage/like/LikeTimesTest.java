@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.LongBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikeTimesTest {
+
+    @Test
+    public void putRemoveTest() {
+        LikeTimes likeTimes = new LikeTimes();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // Случайные добавления и удаления с повторами ID проверяют сдвиг цепочек при удалении и расширение таблицы
+        for (int i = 0; i < 100_000; i++) {
+            long userId = random.nextInt(5_000) + 1;
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(userId);
+                assertEquals((removed != null) ? removed : LikeTimes.NO_TIME, likeTimes.remove(1L, userId));
+            } else {
+                expected.put(userId, (long) i);
+                likeTimes.put(1L, userId, i);
+            }
+        }
+
+        for (long userId = 1; userId <= 5_000; userId++) {
+            assertEquals(expected.getOrDefault(userId, LikeTimes.NO_TIME), likeTimes.get(1L, userId));
+        }
+        assertEquals(LikeTimes.NO_TIME, likeTimes.get(2L, 1L));
+
+        Map<Long, Long> visited = new HashMap<>();
+        likeTimes.forEach((filmId, userId, likedAt) -> visited.put(userId, likedAt));
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    public void putAllTest() {
+        LikeTimes likeTimes = new LikeTimes();
+        LongBuffer userIds = LongBuffer.wrap(new long[] {7, 1, 2, 3, 9});
+        LongBuffer likedAt = LongBuffer.wrap(new long[] {70, 10, 20, 30, 90});
+
+        likeTimes.putAll(5L, userIds, likedAt, 1, 4);
+
+        assertEquals(10L, likeTimes.get(5L, 1L));
+        assertEquals(30L, likeTimes.get(5L, 3L));
+        assertEquals(LikeTimes.NO_TIME, likeTimes.get(5L, 7L));
+        assertEquals(LikeTimes.NO_TIME, likeTimes.get(5L, 9L));
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikedFilmsIndexTest {
+
+    @Test
+    public void getPageTest() {
+        LikedFilmsIndex index = new LikedFilmsIndex();
+        for (long filmId : new long[] {5, 1, 9, 3, 7, 3}) {
+            index.add(1L, filmId);
+        }
+        index.add(2L, 4L);
+        index.remove(1L, 7L);
+        index.remove(1L, 8L);
+
+        assertEquals(List.of(1L, 3L, 5L), index.getPage(1L, 0L, 3));
+        assertEquals(List.of(5L, 9L), index.getPage(1L, 3L, 3));
+        assertEquals(List.of(9L), index.getPage(1L, 6L, 3));
+        assertEquals(List.of(), index.getPage(1L, 9L, 3));
+        assertEquals(List.of(4L), index.getPage(2L, 0L, 3));
+        assertEquals(List.of(), index.getPage(3L, 0L, 3));
+    }
+}
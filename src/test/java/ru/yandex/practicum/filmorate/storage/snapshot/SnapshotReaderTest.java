@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.genre.Genre;
+import ru.yandex.practicum.filmorate.model.mpa.MPA;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotReaderTest {
+
+    private static final int LIKES_COUNT = SnapshotFormat.BLOCK_SIZE * 2 + 17;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void roundTripTest() throws IOException {
+        Path path = writeSnapshot();
+        SnapshotReader reader = SnapshotReader.open(path);
+
+        List<Film> films = new ArrayList<>();
+        reader.forEachFilm(mpaId -> MPA.builder().id(mpaId).build(), genreId -> Genre.builder().id(genreId).build(), films::add);
+        assertEquals(2, films.size());
+        assertEquals("Чебурашка", films.get(0).getName());
+        assertEquals(LocalDate.of(1971, 1, 1), films.get(0).getReleaseDate());
+        assertEquals(4, films.get(0).getMpa().getId());
+        assertEquals(List.of(3, 1), List.of(films.get(0).getGenres().get(0).getId(), films.get(0).getGenres().get(1).getId()));
+        assertNull(films.get(1).getDescription());
+        assertNull(films.get(1).getMpa());
+        assertTrue(films.get(1).getGenres().isEmpty());
+
+        List<User> users = new ArrayList<>();
+        reader.forEachUser(users::add);
+        assertEquals(1, users.size());
+        assertEquals("user@mail.ru", users.get(0).getEmail());
+        assertEquals("Пользователь", users.get(0).getName());
+        assertNull(users.get(0).getBirthday());
+
+        long[] likes = new long[3];
+        reader.forEachLike((filmId, userId, likedAt) -> {
+            assertEquals(likes[0] % 2 + 1, filmId);
+            assertEquals(likes[0], userId);
+            assertEquals(1000L + likes[0], likedAt);
+            likes[0]++;
+        });
+        assertEquals(LIKES_COUNT, likes[0]);
+
+        // Группы по фильму: фильмы чередуются, поэтому каждая группа из одного лайка
+        long[] groups = new long[2];
+        reader.forEachFilmLikes((filmId, userIds, likedAt, from, to) -> {
+            assertEquals(1, to - from);
+            assertEquals(groups[1] % 2 + 1, filmId);
+            assertEquals(1000L + userIds.get(from), likedAt.get(from));
+            groups[0]++;
+            groups[1]++;
+        });
+        assertEquals(LIKES_COUNT, groups[0]);
+
+        List<List<Long>> friendships = new ArrayList<>();
+        reader.forEachFriendship((userId, friendId) -> friendships.add(List.of(userId, friendId)));
+        assertEquals(List.of(List.of(1L, 2L), List.of(2L, 1L)), friendships);
+
+        // Разделы можно обходить повторно
+        List<User> again = new ArrayList<>();
+        reader.forEachUser(again::add);
+        assertEquals(users, again);
+    }
+
+    @Test
+    public void truncatedSnapshotTest() throws IOException {
+        Path path = writeSnapshot();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 100);
+        }
+
+        assertThrows(IOException.class, () -> SnapshotReader.open(path));
+    }
+
+    private Path writeSnapshot() throws IOException {
+        Path path = directory.resolve("filmorate.snapshot");
+        try (SnapshotWriter writer = new SnapshotWriter(path)) {
+            writer.writeFilms(List.of(
+                    Film.builder()
+                            .id(1L)
+                            .name("Чебурашка")
+                            .description("Мультфильм")
+                            .mpa(MPA.builder().id(4).build())
+                            .genres(List.of(Genre.builder().id(3).build(), Genre.builder().id(1).build()))
+                            .releaseDate(LocalDate.of(1971, 1, 1))
+                            .duration(113)
+                            .build(),
+                    Film.builder()
+                            .id(2L)
+                            .name("Без описания")
+                            .releaseDate(LocalDate.of(2000, 1, 1))
+                            .duration(90)
+                            .build()));
+            writer.writeUsers(List.of(User.builder()
+                    .id(1L)
+                    .email("user@mail.ru")
+                    .login("user")
+                    .name("Пользователь")
+                    .friends(Set.of())
+                    .build()));
+
+            for (long i = 0; i < LIKES_COUNT; i++) {
+                writer.addLike(i % 2 + 1, i, 1000L + i);
+            }
+            writer.endLikes();
+
+            writer.addFriendship(1L, 2L);
+            writer.addFriendship(2L, 1L);
+            writer.endFriendships();
+        }
+        return path;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.exceptions.FilmorateSqlException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.friends.FriendIndex;
+import ru.yandex.practicum.filmorate.storage.friends.FriendsStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "filmorate.snapshot.enabled=false")
+@AutoConfigureTestDatabase
+@ActiveProfiles("inmemory")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class InMemoryUserStorageTest {
+    private final UserStorage userStorage;
+    private final FriendsStorage friendsStorage;
+    private final FriendIndex friendIndex;
+
+    @Test
+    public void inMemoryProfileTest() {
+        assertThat(userStorage).isInstanceOf(InMemoryUserStorage.class);
+    }
+
+    @Test
+    public void createUsersConcurrentlyTest() {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        IntStream.range(0, 200).parallel()
+                .forEach(i -> ids.add(userStorage.createUser(buildUser("parallel_" + i)).getId()));
+
+        assertEquals(200, ids.size());
+        ids.forEach(id -> assertThat(userStorage.getUser(id)).isNotNull());
+    }
+
+    @Test
+    public void uniqueLoginAndEmailTest() {
+        User user = userStorage.createUser(buildUser("unique"));
+
+        User sameLogin = buildUser("unique");
+        sameLogin.setEmail("other_unique@mail.com");
+        assertThrows(FilmorateSqlException.class, () -> userStorage.createUser(sameLogin));
+
+        User sameEmail = buildUser("other_unique");
+        sameEmail.setEmail(user.getEmail());
+        assertThrows(FilmorateSqlException.class, () -> userStorage.createUser(sameEmail));
+
+        // Пачка с дубликатом не сохраняется целиком, и ее логины остаются свободными
+        assertThrows(FilmorateSqlException.class,
+                () -> userStorage.createUsers(List.of(buildUser("batch_1"), buildUser("unique"))));
+        assertThat(userStorage.createUser(buildUser("batch_1"))).extracting(User::getLogin).isEqualTo("batch_1");
+
+        User renamed = buildUser("renamed");
+        renamed.setId(user.getId());
+        userStorage.updateUser(renamed);
+        assertThat(userStorage.createUser(buildUser("unique"))).extracting(User::getLogin).isEqualTo("unique");
+    }
+
+    @Test
+    public void addFriendsUpdatesIndexTest() {
+        Long userId = userStorage.createUser(buildUser("friend_1")).getId();
+        Long friendId = userStorage.createUser(buildUser("friend_2")).getId();
+
+        friendsStorage.addFriends(userId, friendId);
+
+        assertEquals(List.of(friendId), friendIndex.getFriendIds(userId));
+        assertEquals(List.of(friendId), userStorage.getFriendsList(userId).stream()
+                .map(User::getId)
+                .collect(Collectors.toList()));
+    }
+
+    private User buildUser(String login) {
+        return User.builder()
+                .login(login)
+                .name(login)
+                .email(login + "@mail.com")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -8,10 +8,12 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.jdbc.Sql;
 import ru.yandex.practicum.filmorate.exceptions.FilmorateNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.friends.FriendIndex;
 import ru.yandex.practicum.filmorate.storage.friends.FriendsDbStorage;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -25,6 +27,7 @@ import static org.junit.jupiter.api.Assertions.*;
 class UserDbStorageTest {
     private final UserDbStorage userStorage;
     private final FriendsDbStorage friendsDbStorage;
+    private final FriendIndex friendIndex;
 
     @Test
     public void createUserStandardBehaviorTest() {
@@ -68,6 +71,34 @@ class UserDbStorageTest {
         assertThat(userList).extracting(List::size).isEqualTo(6);
     }
 
+    @Test
+    public void getUsersListHydrationTest() {
+        friendsDbStorage.addFriends(6L, 1L);
+
+        List<User> userList = userStorage.getUsersList();
+        for (User user : userList) {
+            assertEquals(userStorage.getUser(user.getId()).getFriends(), user.getFriends());
+        }
+        assertTrue(userStorage.getUser(6L).getFriends().contains(1L));
+    }
+
+    @Test
+    public void getUsersPageTest() {
+        List<User> page = userStorage.getUsersPage(2L, 3);
+
+        assertEquals(3, page.size());
+        assertEquals(3L, page.get(0).getId());
+        assertEquals(5L, page.get(2).getId());
+    }
+
+    @Test
+    public void forEachUserTest() {
+        List<User> userList = new ArrayList<>();
+        userStorage.forEachUser(userList::add);
+
+        assertEquals(userStorage.getUsersList().size(), userList.size());
+    }
+
     @Test
     public void updateUserStandardBehaviorTest() {
         User testUser = User.builder()
@@ -153,4 +184,37 @@ class UserDbStorageTest {
         assertEquals(1, userCFL.size());
         assertEquals(3L, userCFL.iterator().next().getId());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getCommonFriendsListAfterDeleteTest() {
+        friendsDbStorage.addFriends(5L, 2L);
+        friendsDbStorage.addFriends(6L, 2L);
+        friendsDbStorage.addFriends(5L, 4L);
+        friendsDbStorage.addFriends(6L, 4L);
+
+        friendsDbStorage.deleteFriend(6L, 4L);
+
+        List<User> userCFL = userStorage.getCommonFriendsList(5L, 6L);
+        assertEquals(1, userCFL.size());
+        assertEquals(2L, userCFL.get(0).getId());
+        assertEquals(userStorage.getUser(2L).getFriends(), userCFL.get(0).getFriends());
+    }
+
+    @Test
+    public void getSuggestedFriendIdsTest() {
+        friendsDbStorage.addFriends(3L, 4L);
+        friendsDbStorage.addFriends(3L, 5L);
+        friendsDbStorage.addFriends(4L, 2L);
+        friendsDbStorage.addFriends(4L, 6L);
+        friendsDbStorage.addFriends(5L, 2L);
+        friendsDbStorage.addFriends(5L, 6L);
+
+        List<Long> suggestions = friendIndex.getSuggestedFriendIds(3L, 10);
+
+        assertEquals(List.of(2L, 6L), suggestions.subList(0, 2));
+        assertFalse(suggestions.contains(3L));
+        assertFalse(suggestions.contains(4L));
+        assertFalse(suggestions.contains(5L));
+        assertEquals(List.of(2L), friendIndex.getSuggestedFriendIds(3L, 1));
+    }
+}